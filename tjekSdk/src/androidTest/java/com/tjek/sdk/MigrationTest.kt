@@ -0,0 +1,49 @@
+package com.tjek.sdk
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import androidx.room.testing.MigrationTestHelper
+import androidx.test.platform.app.InstrumentationRegistry
+import androidx.test.runner.AndroidJUnit4
+import com.tjek.sdk.database.TjekRoomDb
+import org.junit.Assert
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class MigrationTest {
+
+    private val testDb = "migration-test"
+
+    @get:Rule
+    val helper = MigrationTestHelper(
+        InstrumentationRegistry.getInstrumentation(),
+        TjekRoomDb::class.java.canonicalName
+    )
+
+    @Test
+    fun migrate1To2() {
+        helper.createDatabase(testDb, 1).apply {
+            val values = ContentValues().apply {
+                put("id", "event-id")
+                put("version", 2)
+                put("timestamp", 1_600_000_000L)
+                put("jsonEvent", "{}")
+            }
+            insert("shippable_events", SQLiteDatabase.CONFLICT_REPLACE, values)
+            close()
+        }
+
+        val db = helper.runMigrationsAndValidate(testDb, 2, true, TjekRoomDb.MIGRATION_1_2)
+
+        db.query("SELECT `id` FROM shippable_events").use {
+            Assert.assertEquals(1, it.count)
+            it.moveToFirst()
+            Assert.assertEquals("event-id", it.getString(0))
+        }
+        db.query("SELECT name FROM sqlite_master WHERE type = 'index' AND name = 'index_shippable_events_timestamp_id'").use {
+            Assert.assertEquals(1, it.count)
+        }
+    }
+}
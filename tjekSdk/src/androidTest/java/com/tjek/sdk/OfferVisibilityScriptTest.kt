@@ -0,0 +1,52 @@
+package com.tjek.sdk
+
+import android.annotation.SuppressLint
+import android.webkit.WebView
+import android.webkit.WebViewClient
+import androidx.test.platform.app.InstrumentationRegistry
+import androidx.test.runner.AndroidJUnit4
+import com.tjek.sdk.publicationviewer.incito.offerVisibilityScript
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+@RunWith(AndroidJUnit4::class)
+class OfferVisibilityScriptTest {
+
+    // The markup of the renderer: every view with an id is an element with the id in data-id
+    private val html = """
+        <html><body>
+            <div data-id="section"><div data-id="offer-1">1</div><div data-id="offer-2">2</div></div>
+            <div id="offer-3">3</div>
+        </body></html>
+    """.trimIndent()
+
+    @SuppressLint("SetJavaScriptEnabled")
+    private fun observedOffers(viewIdsJson: String): String? {
+        val latch = CountDownLatch(1)
+        var result: String? = null
+        InstrumentationRegistry.getInstrumentation().runOnMainSync {
+            val webView = WebView(InstrumentationRegistry.getInstrumentation().targetContext)
+            webView.settings.javaScriptEnabled = true
+            webView.webViewClient = object : WebViewClient() {
+                override fun onPageFinished(view: WebView, url: String?) {
+                    view.evaluateJavascript(offerVisibilityScript(viewIdsJson, 0.5f)) {
+                        result = it
+                        latch.countDown()
+                    }
+                }
+            }
+            webView.loadDataWithBaseURL(null, html, "text/html", "utf-8", null)
+        }
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS))
+        return result
+    }
+
+    @Test
+    fun offerViewsAreFoundByViewId() {
+        // offer-3 has no data-id, so it isn't an incito view
+        Assert.assertEquals("2", observedOffers("""["offer-1","offer-2","offer-3"]"""))
+    }
+}
@@ -24,6 +24,8 @@ import com.tjek.sdk.eventstracker.Event
 import com.tjek.sdk.eventstracker.TjekEventsTracker
 import com.tjek.sdk.eventstracker.api.EventClient
 import com.tjek.sdk.eventstracker.api.EventEnvironment
+import com.tjek.sdk.publicationviewer.PublicationSessionCache
+import com.tjek.sdk.publicationviewer.paged.offline.OfflinePublicationStore
 
 const val META_API_KEY = "com.tjek.sdk.api_key"
 const val META_DEVELOP_API_KEY = "com.tjek.sdk.develop.api_key"
@@ -39,6 +41,8 @@ object TjekSDK {
             setClientVersion(context)
         }
         TjekPreferences.initialize(context)
+        OfflinePublicationStore.initialize(context)
+        PublicationSessionCache.initialize(context)
         TjekEventsTracker.initialize(context)
         return this
     }
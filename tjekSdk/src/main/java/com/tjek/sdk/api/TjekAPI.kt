@@ -20,6 +20,7 @@ import com.tjek.sdk.api.models.*
 import com.tjek.sdk.api.remote.*
 import com.tjek.sdk.api.remote.request.*
 import com.tjek.sdk.api.remote.request.APIRequest
+import okio.Sink
 
 object TjekAPI {
 
@@ -236,4 +237,21 @@ object TjekAPI {
     ): ResponseType<IncitoData> {
         return APIRequest.getIncito(id, deviceCategory, orientation, pixelRatio, maxWidth, featureLabels, locale)
     }
+
+    /**
+     * Get an incito publication, copying the response to `tee` while it's downloaded
+     * (used by the incito viewer to parse the offers during the download).
+     */
+    internal suspend fun getIncito(
+        id: Id,
+        deviceCategory: IncitoDeviceCategory,
+        orientation: IncitoOrientation,
+        pixelRatio: Float,
+        maxWidth: Int,
+        featureLabels: List<FeatureLabel>?,
+        locale: String?,
+        tee: Sink
+    ): ResponseType<IncitoData> {
+        return APIRequest.getIncito(id, deviceCategory, orientation, pixelRatio, maxWidth, featureLabels, locale, tee)
+    }
 }
\ No newline at end of file
@@ -52,6 +52,13 @@ internal object APIClient {
 
     private val languageTags = LocaleListCompat.getAdjustedDefault().toLanguageTags()
 
+    // Also used to store the api responses (e.g. offline publications)
+    val moshi: Moshi = Moshi.Builder()
+        .add(PublicationType::class.java, EnumJsonAdapter.create(PublicationType::class.java).withUnknownFallback(PublicationType.paged))
+        .add(ByteString::class.java, RawJson::class.java, RawJsonAdapter())
+        .add(QuantityUnit::class.java, QuantityUnitAdapter())
+        .build()
+
     fun setApiKey(context: Context) {
         // get app key from manifest
         val packageName = context.packageName
@@ -114,12 +121,6 @@ internal object APIClient {
             .addInterceptor(getLoggingInterceptor(logLevel))
             .build()
 
-        val moshi = Moshi.Builder()
-            .add(PublicationType::class.java, EnumJsonAdapter.create(PublicationType::class.java).withUnknownFallback(PublicationType.paged))
-            .add(ByteString::class.java, RawJson::class.java, RawJsonAdapter())
-            .add(QuantityUnit::class.java, QuantityUnitAdapter())
-            .build()
-
         return Retrofit.Builder()
             .baseUrl("https://${environment.host}/")
             .addConverterFactory(ScalarsConverterFactory.create())
@@ -25,8 +25,15 @@ import com.tjek.sdk.api.remote.services.BusinessService
 import com.tjek.sdk.api.remote.services.OfferService
 import com.tjek.sdk.api.remote.services.PublicationService
 import com.tjek.sdk.api.remote.services.StoreService
+import okhttp3.ResponseBody
+import okio.Buffer
+import okio.BufferedSource
+import okio.Sink
+import java.io.IOException
 import java.time.LocalDateTime
 
+private const val TEE_CHUNK_SIZE = 8192L
+
 internal object APIRequest : APIRequestBase() {
 
     private val publicationService: PublicationService by lazy { APIClient.getClient().create(PublicationService::class.java) }
@@ -164,12 +171,7 @@ internal object APIRequest : APIRequestBase() {
         publicationId: Id,
         aspectRatio: Double? = null
     ): ResponseType<List<PublicationPageV2>> {
-        return safeApiCall(
-            decoder = { list ->
-                list.mapIndexed { pageIndex, images ->
-                    PublicationPageV2(pageIndex, "${pageIndex + 1}", aspectRatio ?: 1.0, images)
-                }
-            }) {
+        return safeApiCall(decoder = { list -> decodePublicationPages(list, aspectRatio) }) {
             publicationService.getCatalogPages(publicationId)
         }
     }
@@ -179,15 +181,36 @@ internal object APIRequest : APIRequestBase() {
         width: Double,
         height: Double
     ): ResponseType<List<PublicationHotspotV2>> {
-        return safeApiCall(
-            decoder = { list ->
-                list.map { PublicationHotspotV2.fromDecodable(it) }
-                    .onEach { it.normalize(width, height) }
-            }) {
+        return safeApiCall(decoder = { list -> decodePublicationHotspots(list, width, height) }) {
             publicationService.getCatalogHotspots(publicationId)
         }
     }
 
+    // The undecoded responses, stored as they are by the offline publications
+
+    suspend fun getPublicationDecodable(publicationId: Id): ResponseType<PublicationV2Decodable> {
+        return safeApiCall(decoder = { it }) { publicationService.getCatalog(publicationId) }
+    }
+
+    suspend fun getPublicationPageImages(publicationId: Id): ResponseType<List<ImageUrlsV2>> {
+        return safeApiCall(decoder = { it }) { publicationService.getCatalogPages(publicationId) }
+    }
+
+    suspend fun getPublicationHotspotsDecodable(publicationId: Id): ResponseType<List<PublicationHotspotV2Decodable>> {
+        return safeApiCall(decoder = { it }) { publicationService.getCatalogHotspots(publicationId) }
+    }
+
+    fun decodePublicationPages(list: List<ImageUrlsV2>, aspectRatio: Double?): List<PublicationPageV2> {
+        return list.mapIndexed { pageIndex, images ->
+            PublicationPageV2(pageIndex, "${pageIndex + 1}", aspectRatio ?: 1.0, images)
+        }
+    }
+
+    fun decodePublicationHotspots(list: List<PublicationHotspotV2Decodable>, width: Double, height: Double): List<PublicationHotspotV2> {
+        return list.map { PublicationHotspotV2.fromDecodable(it) }
+            .onEach { it.normalize(width, height) }
+    }
+
     suspend fun getIncito(
         id: Id,
         deviceCategory: IncitoDeviceCategory,
@@ -199,16 +222,75 @@ internal object APIRequest : APIRequestBase() {
     ): ResponseType<IncitoData> {
         return safeApiCall(
             decoder = { it }) {
-            publicationService.getIncito(IncitoAPIQuery(
-                id = id,
-                deviceCategory = deviceCategory,
-                orientation = orientation,
-                pixelRatio = pixelRatio,
-                maxWidth = maxWidth,
-                locale = locale,
-                time = LocalDateTime.now().getV4FormattedStr(),
-                featureLabels = featureLabels
-            ))
+            publicationService.getIncito(incitoQuery(id, deviceCategory, orientation, pixelRatio, maxWidth, featureLabels, locale))
+        }
+    }
+
+    // Same as getIncito, but every chunk of the response is also written to `tee` while it's downloaded.
+    // `tee` is closed when the download is over. If the reader of `tee` closes it earlier, the download continues anyway.
+    suspend fun getIncito(
+        id: Id,
+        deviceCategory: IncitoDeviceCategory,
+        orientation: IncitoOrientation,
+        pixelRatio: Float,
+        maxWidth: Int,
+        featureLabels: List<FeatureLabel>?,
+        locale: String?,
+        tee: Sink
+    ): ResponseType<IncitoData> {
+        return safeApiCall(
+            decoder = { body: ResponseBody ->
+                body.use {
+                    try {
+                        readAndTee(it.source(), tee)
+                    } finally {
+                        tee.close()
+                    }
+                }
+            }) {
+            publicationService.getIncitoStream(incitoQuery(id, deviceCategory, orientation, pixelRatio, maxWidth, featureLabels, locale))
+        }
+    }
+
+    private fun incitoQuery(
+        id: Id,
+        deviceCategory: IncitoDeviceCategory,
+        orientation: IncitoOrientation,
+        pixelRatio: Float,
+        maxWidth: Int,
+        featureLabels: List<FeatureLabel>?,
+        locale: String?
+    ): IncitoAPIQuery {
+        return IncitoAPIQuery(
+            id = id,
+            deviceCategory = deviceCategory,
+            orientation = orientation,
+            pixelRatio = pixelRatio,
+            maxWidth = maxWidth,
+            locale = locale,
+            time = LocalDateTime.now().getV4FormattedStr(),
+            featureLabels = featureLabels
+        )
+    }
+
+    private fun readAndTee(source: BufferedSource, tee: Sink): String {
+        val content = Buffer()
+        val chunk = Buffer()
+        var teeOpen = true
+        while (true) {
+            val read = source.read(content, TEE_CHUNK_SIZE)
+            if (read == -1L) break
+            if (teeOpen) {
+                try {
+                    content.copyTo(chunk, content.size - read, read)
+                    tee.write(chunk, read)
+                } catch (e: IOException) {
+                    // the reader doesn't need more data
+                    teeOpen = false
+                    chunk.clear()
+                }
+            }
         }
+        return content.readUtf8()
     }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ import com.tjek.sdk.api.models.ImageUrlsV2
 import com.tjek.sdk.api.models.PublicationHotspotV2Decodable
 import com.tjek.sdk.api.models.PublicationV2Decodable
 import com.tjek.sdk.api.remote.request.IncitoAPIQuery
+import okhttp3.ResponseBody
 import retrofit2.Response
 import retrofit2.http.*
 
@@ -39,4 +40,8 @@ interface PublicationService {
 
     @POST("v4/rpc/generate_incito_from_publication")
     suspend fun getIncito(@Body incitoAPIQuery: IncitoAPIQuery): Response<IncitoData>
+
+    @Streaming
+    @POST("v4/rpc/generate_incito_from_publication")
+    suspend fun getIncitoStream(@Body incitoAPIQuery: IncitoAPIQuery): Response<ResponseBody>
 }
\ No newline at end of file
@@ -18,13 +18,15 @@ import android.content.Context
 import androidx.room.Database
 import androidx.room.Room
 import androidx.room.RoomDatabase
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
 import com.tjek.sdk.eventstracker.EventDao
 import com.tjek.sdk.eventstracker.ShippableEvent
 
 
 @Database(entities = [
     ShippableEvent::class
-    ], version = 1)
+    ], version = 2)
 abstract class TjekRoomDb : RoomDatabase() {
     abstract fun eventDao(): EventDao
 
@@ -39,8 +41,17 @@ abstract class TjekRoomDb : RoomDatabase() {
             }
         }
 
+        // Index of the event table, for reading it in (timestamp, id) order
+        internal val MIGRATION_1_2 = object : Migration(1, 2) {
+            override fun migrate(database: SupportSQLiteDatabase) {
+                database.execSQL("CREATE INDEX IF NOT EXISTS `index_shippable_events_timestamp_id` ON `shippable_events` (`timestamp`, `id`)")
+            }
+        }
+
         private fun buildDatabase(context: Context): TjekRoomDb {
-            return Room.databaseBuilder(context, TjekRoomDb::class.java, "tjek_sdk_db").build()
+            return Room.databaseBuilder(context, TjekRoomDb::class.java, "tjek_sdk_db")
+                .addMigrations(MIGRATION_1_2)
+                .build()
         }
     }
 }
@@ -18,32 +18,78 @@ import com.tjek.sdk.TjekLogCat
 import com.tjek.sdk.api.remote.ResponseType
 import com.tjek.sdk.eventstracker.api.EventStatus
 import com.tjek.sdk.eventstracker.api.ShipEventRequest
+import okio.utf8Size
 import java.util.concurrent.TimeUnit
 
 internal class EventShipper(
     private val eventDao: EventDao
 ) {
 
+    companion object {
+        // Events read from the table at a time
+        const val READ_BATCH_SIZE = 200
+        // Max size in bytes (utf-8) of the events sent in a request. A bigger event is sent alone
+        const val MAX_REQUEST_BYTES = 256 * 1024
+    }
+
     private val tag = "EventShipper"
 
-    suspend fun shipEvents() {
-        val toBeShipped = eventDao.getEvents()
-        if (toBeShipped.isEmpty()) {
+    // Ships the events in the table, oldest first, a batch at a time, so memory and request size don't grow with the backlog.
+    // Stops at the first failed request: the events left are shipped next time.
+    // Returns the number of events deleted from the table
+    suspend fun shipEvents(): Int {
+        var deleted = 0
+        var read = 0
+        var lastTimestamp = Long.MIN_VALUE
+        var lastId = ""
+        while (true) {
+            val batch = eventDao.getEventsAfter(lastTimestamp, lastId, READ_BATCH_SIZE)
+            if (batch.isEmpty()) break
+            read += batch.size
+            for (request in splitInRequests(batch)) {
+                deleted += shipRequest(request) ?: return deleted
+            }
+            if (batch.size < READ_BATCH_SIZE) break
+            lastTimestamp = batch.last().timestamp
+            lastId = batch.last().id
+        }
+        if (read == 0) {
             TjekLogCat.v("$tag: no event to ship at the moment")
-            return
         }
+        return deleted
+    }
+
+    private fun splitInRequests(events: List<ShippableEvent>): List<List<ShippableEvent>> {
+        val requests = ArrayList<List<ShippableEvent>>()
+        var start = 0
+        var bytes = 0
+        for (i in events.indices) {
+            val size = events[i].jsonEvent.utf8Size().toInt()
+            if (i > start && bytes + size > MAX_REQUEST_BYTES) {
+                requests.add(events.subList(start, i))
+                start = i
+                bytes = 0
+            }
+            bytes += size
+        }
+        requests.add(events.subList(start, events.size))
+        return requests
+    }
 
+    // Returns the number of events deleted, null if the request failed
+    private suspend fun shipRequest(toBeShipped: List<ShippableEvent>): Int? {
         TjekLogCat.v("$tag shipping ${toBeShipped.size}")
         when (val res = ShipEventRequest.shipEvents(toBeShipped)) {
             is ResponseType.Error -> {
                 TjekLogCat.e("$tag: $res")
-                return
+                return null
             }
             is ResponseType.Success -> {
+                var deleted = 0
                 // delete ack-ed events
                 val ack = res.data.events.filter { it.status == EventStatus.ack }.map { it.id }
                 if (ack.isNotEmpty()) {
-                    eventDao.deleteEvents(ack)
+                    deleted += eventDao.deleteEvents(ack)
                 }
                 // check timestamp for nack-ed events and delete them if they're too old
                 val nack = res.data.events
@@ -52,9 +98,10 @@ internal class EventShipper(
                     .map { it.id }
                 val timeLimit =
                     TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - TimeUnit.HOURS.toSeconds(36)
-                val oldNack = toBeShipped.filter { it.timestamp < timeLimit && nack.contains(it.id) }.map { it.id }
-                if (nack.isNotEmpty()) {
-                    eventDao.deleteEvents(oldNack)
+                val timestamps = toBeShipped.associateBy({ it.id }, { it.timestamp })
+                val oldNack = nack.filter { (timestamps[it] ?: Long.MAX_VALUE) < timeLimit }
+                if (oldNack.isNotEmpty()) {
+                    deleted += eventDao.deleteEvents(oldNack)
                 }
                 // other status
                 val other =
@@ -63,12 +110,13 @@ internal class EventShipper(
                         .also { if (it.isNotEmpty()) TjekLogCat.w("$tag $it") }
                         .map { it.id }
                 if (other.isNotEmpty()) {
-                    eventDao.deleteEvents(other)
+                    deleted += eventDao.deleteEvents(other)
                 }
 
                 // print some logs
                 TjekLogCat.v("$tag: Ack=${ack.size}, Nack=${nack.size} (${oldNack.size} too old), other=${other.size}")
+                return deleted
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,108 @@
+package com.tjek.sdk.eventstracker
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import com.tjek.sdk.TjekLogCat
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * The only writer of the event table.
+ *
+ * Tracked events are queued in memory and inserted in batches: a batch is written [FLUSH_DELAY] ms after its first event,
+ * or as soon as it has [MAX_BATCH_SIZE] events. A burst of events (e.g. swiping through pages) is then one transaction
+ * instead of one per event. The number of events in the table is kept in memory, so deciding about a shipment doesn't
+ * query the database.
+ */
+internal class EventWriter(
+    private val eventDao: EventDao,
+    scope: CoroutineScope,
+    // Events to add before the tracked ones, e.g. the ones migrated from the legacy database
+    initialEvents: List<ShippableEvent>,
+    // Called after every batch with the number of events in the table
+    private val onEventsWritten: (pendingCount: Int) -> Unit
+) {
+
+    companion object {
+        const val FLUSH_DELAY = 1000L
+        const val MAX_BATCH_SIZE = 50
+    }
+
+    private val tag = "EventWriter"
+    private val queue = Channel<Event>(Channel.UNLIMITED)
+    private val pending = AtomicInteger(0)
+
+    val pendingCount: Int
+        get() = pending.get()
+
+    init {
+        scope.launch {
+            // A failure here must not stop the writer, or the tracked events would pile up in the queue
+            try {
+                if (initialEvents.isNotEmpty()) {
+                    eventDao.insert(initialEvents)
+                }
+            } catch (e: Exception) {
+                TjekLogCat.printStackTrace(e)
+            }
+            try {
+                pending.set(eventDao.getCount())
+            } catch (e: Exception) {
+                TjekLogCat.printStackTrace(e)
+                pending.set(0)
+            }
+            writeLoop()
+        }
+    }
+
+    fun write(event: Event) {
+        queue.trySend(event)
+    }
+
+    // The shipper deleted these events from the table
+    fun onEventsDeleted(count: Int) {
+        if (count > 0) pending.addAndGet(-count)
+    }
+
+    private suspend fun writeLoop() {
+        val batch = ArrayList<ShippableEvent>(MAX_BATCH_SIZE)
+        while (true) {
+            batch.add(queue.receive().asShippableEvent())
+            drainQueue(batch)
+            if (batch.size < MAX_BATCH_SIZE) {
+                delay(FLUSH_DELAY)
+                drainQueue(batch)
+            }
+            try {
+                eventDao.insert(batch)
+                TjekLogCat.v("$tag: ${batch.size} events recorded")
+                onEventsWritten(pending.addAndGet(batch.size))
+            } catch (e: Exception) {
+                TjekLogCat.printStackTrace(e)
+            }
+            batch.clear()
+        }
+    }
+
+    private fun drainQueue(batch: MutableList<ShippableEvent>) {
+        while (batch.size < MAX_BATCH_SIZE) {
+            val event = queue.tryReceive().getOrNull() ?: return
+            batch.add(event.asShippableEvent())
+        }
+    }
+}
@@ -16,7 +16,8 @@ package com.tjek.sdk.eventstracker
  */
 import androidx.room.*
 
-@Entity(tableName = "shippable_events")
+// The (timestamp, id) index serves the cursor of getEventsAfter, so reading a batch doesn't scan and sort the table
+@Entity(tableName = "shippable_events", indices = [Index(value = ["timestamp", "id"])])
 data class ShippableEvent(
     @PrimaryKey val id: String,
     val version: Int,
@@ -43,11 +44,15 @@ interface EventDao {
     suspend fun insert(events: List<ShippableEvent>)
 
     @Query("DELETE FROM shippable_events WHERE `id` IN (:ids)")
-    suspend fun deleteEvents(ids: List<String>)
+    suspend fun deleteEvents(ids: List<String>): Int
 
     @Query("SELECT * FROM shippable_events")
     suspend fun getEvents(): List<ShippableEvent>
 
+    // The events following (timestamp, id) in that order, the cursor to read the table in batches
+    @Query("SELECT * FROM shippable_events WHERE `timestamp` > :timestamp OR (`timestamp` = :timestamp AND `id` > :id) ORDER BY `timestamp`, `id` LIMIT :limit")
+    suspend fun getEventsAfter(timestamp: Long, id: String, limit: Int): List<ShippableEvent>
+
     @Query("SELECT COUNT(*) FROM shippable_events")
     suspend fun getCount(): Int
 }
@@ -31,10 +31,11 @@ data class EventLocation(
 
 internal object TjekEventsTracker {
     private const val GEO_HASH_PRECISION = 4
+    private const val SHIP_IMMEDIATELY_COUNT = 100
 
     private val shipInterval = TimeUnit.SECONDS.toMillis(60)
     private lateinit var eventShipper: EventShipper
-    private lateinit var eventDao: EventDao
+    private lateinit var eventWriter: EventWriter
 
     private val shipmentScheduled = AtomicBoolean(false)
 
@@ -69,46 +70,45 @@ internal object TjekEventsTracker {
         }
         event.addApplicationTrackId(trackId)
         location?.let { event.addLocation(it.geoHash, it.timestamp) }
-        coroutineScope.launch {
-            // transform the Event into a shippable one
-            eventDao.insert(event.asShippableEvent().also { TjekLogCat.v("Event recorded: ${it.jsonEvent}") })
+        eventWriter.write(event)
+    }
 
-            // Is it time to schedule a shipment?
-            val canScheduleShipment = !shipmentScheduled.get()
-            val shouldShipImmediately = eventDao.getCount() >= 100 && canScheduleShipment
-            when {
-                shouldShipImmediately -> eventShipper.shipEvents()
-                canScheduleShipment -> {
-                    shipmentScheduled.set(true)
-                    delay(shipInterval)
-                    if (isActive) {
-                        eventShipper.shipEvents()
-                        shipmentScheduled.set(false)
-                    }
-                }
+    // Is it time to schedule a shipment?
+    private fun onEventsWritten(pendingCount: Int) {
+        if (!shipmentScheduled.compareAndSet(false, true)) return
+        coroutineScope.launch {
+            if (pendingCount < SHIP_IMMEDIATELY_COUNT) {
+                delay(shipInterval)
+            }
+            try {
+                eventWriter.onEventsDeleted(eventShipper.shipEvents())
+            } catch (e: Exception) {
+                TjekLogCat.printStackTrace(e)
+            } finally {
+                shipmentScheduled.set(false)
             }
         }
     }
 
     fun initialize(context: Context) {
         setTrackId(context)
-        eventDao = TjekRoomDb.getInstance(context).eventDao()
-        migrateEventDatabase(context)
+        val eventDao = TjekRoomDb.getInstance(context).eventDao()
         eventShipper = EventShipper(eventDao)
+        eventWriter = EventWriter(eventDao, coroutineScope, migrateEventDatabase(context), ::onEventsWritten)
     }
 
-    private fun migrateEventDatabase(context: Context) {
+    private fun migrateEventDatabase(context: Context): List<ShippableEvent> {
         LegacyEventHandler.initialize(context)
-        LegacyEventHandler.getLegacyEvents()
+        return LegacyEventHandler.getLegacyEvents()
             .onSuccess {
                 if (it.isNotEmpty()) {
                     TjekLogCat.v("Retrieved ${it.size} from the old database")
-                    coroutineScope.launch{ eventDao.insert(it) }
                 }
             }
             .onFailure {
                 TjekLogCat.printStackTrace(Exception(it))
             }
+            .getOrDefault(emptyList())
     }
 
     private fun setTrackId(context: Context) {
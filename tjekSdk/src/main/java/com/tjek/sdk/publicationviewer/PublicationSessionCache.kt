@@ -0,0 +1,145 @@
+package com.tjek.sdk.publicationviewer
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.content.ComponentCallbacks2
+import android.content.Context
+import android.content.res.Configuration
+import android.os.SystemClock
+import android.util.LruCache
+import com.tjek.sdk.api.Id
+import com.tjek.sdk.api.IncitoData
+import com.tjek.sdk.api.models.IncitoOffer
+import com.tjek.sdk.api.models.IncitoViewId
+import com.tjek.sdk.api.models.PublicationHotspotV2
+import com.tjek.sdk.api.models.PublicationPageV2
+import com.tjek.sdk.api.models.PublicationV2
+import com.tjek.sdk.publicationviewer.paged.HotspotTable
+
+internal sealed class PublicationSession {
+
+    val createdAt = SystemClock.elapsedRealtime()
+
+    // Rough size in memory, it's what the cache limit is about
+    abstract val byteCount: Int
+}
+
+internal class PagedPublicationSession(
+    val publication: PublicationV2,
+    val pages: List<PublicationPageV2>,
+    val hotspots: List<PublicationHotspotV2>,
+    val hotspotTable: HotspotTable
+) : PublicationSession() {
+
+    override val byteCount: Int
+        get() = PUBLICATION_BYTES + pages.size * PAGE_BYTES + hotspots.size * HOTSPOT_BYTES
+}
+
+internal class IncitoPublicationSession(
+    val publication: PublicationV2,
+    val incitoData: IncitoData,
+    val offers: Map<IncitoViewId, IncitoOffer>?
+) : PublicationSession() {
+
+    override val byteCount: Int
+        get() = PUBLICATION_BYTES + incitoData.length * 2 + (offers?.size ?: 0) * OFFER_BYTES
+}
+
+// Estimates of the memory taken by the parsed objects, strings included
+private const val PUBLICATION_BYTES = 2 * 1024
+private const val PAGE_BYTES = 512
+private const val HOTSPOT_BYTES = 2 * 1024
+private const val OFFER_BYTES = 1024
+
+/**
+ * Process wide cache of the publications loaded by the viewers, so opening a publication viewed a moment ago
+ * (from another screen or after going back) shows it right away, without fetching and parsing everything again.
+ *
+ * The sessions are kept in LRU caches, for [MAX_AGE] ms at most so an updated publication is eventually fetched again.
+ * The paged sessions are small and get 1/32 of the heap. An incito is a json of a few MB, so the incito sessions
+ * have their own budget of 1/16 of the heap, and can't push the paged ones out.
+ * A session larger than a quarter of its budget is not cached, it would flush everything else.
+ * The caches are emptied when the system is low on memory.
+ * Offline publications are not cached: they're read from the disk anyway.
+ */
+internal object PublicationSessionCache {
+
+    private const val MAX_AGE = 30 * 60 * 1000L
+
+    private val pagedCache = SessionLruCache<PagedPublicationSession>(Runtime.getRuntime().maxMemory() / 32)
+    private val incitoCache = SessionLruCache<IncitoPublicationSession>(Runtime.getRuntime().maxMemory() / 16)
+
+    fun initialize(context: Context) {
+        context.applicationContext.registerComponentCallbacks(object : ComponentCallbacks2 {
+            override fun onTrimMemory(level: Int) {
+                if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) clear()
+            }
+
+            override fun onConfigurationChanged(newConfig: Configuration) { }
+
+            override fun onLowMemory() {
+                clear()
+            }
+        })
+    }
+
+    fun getPaged(publicationId: Id): PagedPublicationSession? = get(pagedCache, publicationId)
+
+    fun put(session: PagedPublicationSession) {
+        pagedCache.putIfFits(session.publication.id, session)
+    }
+
+    // The incito depends on the parameters of the request (device, orientation, width...), they're part of the key
+    fun getIncito(requestKey: String): IncitoPublicationSession? = get(incitoCache, requestKey)
+
+    fun put(requestKey: String, session: IncitoPublicationSession) {
+        incitoCache.putIfFits(requestKey, session)
+    }
+
+    fun clear() {
+        pagedCache.evictAll()
+        incitoCache.evictAll()
+    }
+
+    private fun <T : PublicationSession> get(cache: SessionLruCache<T>, key: String): T? {
+        val session = cache.get(key) ?: return null
+        if (SystemClock.elapsedRealtime() - session.createdAt > MAX_AGE) {
+            cache.remove(key)
+            return null
+        }
+        return session
+    }
+}
+
+internal class SessionLruCache<T : PublicationSession>(maxBytes: Long) :
+    LruCache<String, T>(maxBytes.coerceIn(1, Int.MAX_VALUE.toLong()).toInt()) {
+
+    companion object {
+        // Largest share of the cache a single session can take
+        const val MAX_ENTRY_FRACTION = 4
+    }
+
+    override fun sizeOf(key: String, value: T): Int = value.byteCount
+
+    // Returns false if the session is too large to be cached
+    fun putIfFits(key: String, session: T): Boolean {
+        if (session.byteCount > maxSize() / MAX_ENTRY_FRACTION) {
+            remove(key)
+            return false
+        }
+        put(key, session)
+        return true
+    }
+}
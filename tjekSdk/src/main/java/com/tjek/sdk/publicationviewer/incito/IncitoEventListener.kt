@@ -28,6 +28,8 @@ interface IncitoEventListener {
      * - verticalScrollOffset: scrolling offset for the webview.
      * Save this value if you want to reopen the incito from the last position.
      * It'll be used in webview.scrollTo(0, verticalScrollOffset)
+     *
+     * Called on the main thread, at most once per frame (see `IncitoPublicationConfiguration.progressThrottleMillis`).
      */
     fun onProgressChanged(progress: Float, verticalScrollOffset: Int)
 
@@ -40,4 +42,19 @@ interface IncitoEventListener {
      * To jump to a specific offer, use the key, `IncitoViewId`, to jump to it calling `IncitoPublicationFragment.goToOffer`.
      */
     fun onOfferListReady(offers: Map<IncitoViewId, IncitoOffer>)
+
+    /**
+     * Offers that became visible or hidden since the last call.
+     * An offer is visible when at least half of its view is on screen.
+     * The changes are batched by the renderer: this is called on the main thread, at most once per frame.
+     * Only called with `IncitoPublicationConfiguration.reportOfferVisibility` enabled.
+     */
+    fun onOffersVisibilityChanged(visible: List<IncitoOffer>, hidden: List<IncitoOffer>) {}
+
+    /**
+     * An offer has been visible for the first time in this incito session.
+     * If your app records offer impressions, this is the place to do it: the sdk doesn't send any event for it.
+     * Only called with `IncitoPublicationConfiguration.reportOfferVisibility` enabled.
+     */
+    fun onOfferViewed(incitoOffer: IncitoOffer, publicationV2: PublicationV2?) {}
 }
\ No newline at end of file
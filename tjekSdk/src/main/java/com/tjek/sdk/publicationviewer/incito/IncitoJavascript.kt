@@ -0,0 +1,129 @@
+package com.tjek.sdk.publicationviewer.incito
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+// Name of the object added with WebView.addJavascriptInterface
+internal const val JS_INTERFACE_NAME = "androidJSInterface"
+
+// Attribute of the elements the renderer creates for the incito views, with the view id as value.
+// It's the id the renderer reports with viewClicked and getElementIdsAtPoint, and looks up in goToView
+internal const val VIEW_ID_ATTRIBUTE = "data-id"
+
+/*
+  Scripts injected in the renderer once the page is loaded (before `init` is called).
+
+  The renderer calls the methods of the injected object directly, so the bridge is wrapped by a plain javascript
+  object with the same methods. The wrapper forwards every call, except `progress` that is coalesced to one call
+  per animation frame and, if throttleMillis > 0, to at most one call every throttleMillis.
+  The native side coalesces again per vsync (see IncitoProgressDispatcher), so it's safe if the wrapper fails.
+*/
+internal fun progressThrottleScript(throttleMillis: Long): String = """
+    (function(throttle) {
+        var bridge = window.$JS_INTERFACE_NAME;
+        if (!bridge || bridge.tjekWrapped) return;
+        var pending = null;
+        var scheduled = false;
+        var last = -Infinity;
+        function flush(ts) {
+            scheduled = false;
+            if (pending === null) return;
+            if (ts - last < throttle) {
+                scheduled = true;
+                window.requestAnimationFrame(flush);
+                return;
+            }
+            last = ts;
+            var p = pending;
+            pending = null;
+            bridge.progress(p[0], p[1]);
+        }
+        window.$JS_INTERFACE_NAME = {
+            tjekWrapped: true,
+            viewClicked: function(viewIds) { return bridge.viewClicked(viewIds); },
+            initDone: function() { return bridge.initDone(); },
+            offersVisibilityChanged: function(visible, hidden) { return bridge.offersVisibilityChanged(visible, hidden); },
+            progress: function(progress, scrollOffset) {
+                pending = [progress, scrollOffset];
+                if (!scheduled) {
+                    scheduled = true;
+                    window.requestAnimationFrame(flush);
+                }
+            }
+        };
+    })(${throttleMillis.coerceAtLeast(0)});
+""".trimIndent()
+
+/*
+  Observes the offer views with an IntersectionObserver and reports which offers entered or left the viewport.
+  The changes are collected and sent with a single bridge call per animation frame. An offer that enters and
+  leaves the viewport in the same frame isn't reported at all.
+  The offer views are the elements with VIEW_ID_ATTRIBUTE set to one of viewIds. Returns how many were found.
+  - viewIdsJson: json array with the view ids of the offers
+  - threshold: fraction of the offer view that has to be visible to count it as visible
+*/
+internal fun offerVisibilityScript(viewIdsJson: String, threshold: Float): String = """
+    (function(viewIds, threshold) {
+        if (!window.IntersectionObserver || window.tjekOfferObserver) return 0;
+        var idOf = new Map();
+        var visible = {};
+        var reported = {};
+        var dirty = [];
+        var scheduled = false;
+        function flush() {
+            scheduled = false;
+            var shown = [];
+            var hidden = [];
+            for (var i = 0; i < dirty.length; i++) {
+                var id = dirty[i];
+                var isVisible = visible[id] === true;
+                if (isVisible !== (reported[id] === true)) {
+                    reported[id] = isVisible;
+                    (isVisible ? shown : hidden).push(id);
+                }
+            }
+            dirty = [];
+            if (shown.length > 0 || hidden.length > 0) {
+                window.$JS_INTERFACE_NAME.offersVisibilityChanged(JSON.stringify(shown), JSON.stringify(hidden));
+            }
+        }
+        var observer = new IntersectionObserver(function(entries) {
+            for (var i = 0; i < entries.length; i++) {
+                var entry = entries[i];
+                var id = idOf.get(entry.target);
+                visible[id] = entry.isIntersecting && entry.intersectionRatio >= threshold;
+                dirty.push(id);
+            }
+            if (!scheduled) {
+                scheduled = true;
+                window.requestAnimationFrame(flush);
+            }
+        }, { threshold: [0, threshold] });
+        var offerIds = {};
+        for (var i = 0; i < viewIds.length; i++) {
+            offerIds[viewIds[i]] = true;
+        }
+        var views = document.querySelectorAll('[$VIEW_ID_ATTRIBUTE]');
+        for (var i = 0; i < views.length; i++) {
+            var id = views[i].getAttribute('$VIEW_ID_ATTRIBUTE');
+            if (offerIds[id] === true && !idOf.has(views[i])) {
+                idOf.set(views[i], id);
+                observer.observe(views[i]);
+            }
+        }
+        window.tjekOfferObserver = observer;
+        return idOf.size;
+    })($viewIdsJson, $threshold);
+""".trimIndent()
@@ -15,93 +15,175 @@ package com.tjek.sdk.publicationviewer.incito
  * limitations under the License.
  */
 import android.net.Uri
+import com.squareup.moshi.JsonReader
 import com.tjek.sdk.TjekLogCat
 import com.tjek.sdk.api.models.IncitoOffer
 import com.tjek.sdk.api.models.IncitoViewId
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
-import org.json.JSONException
-import org.json.JSONObject
+import okio.Buffer
+import okio.BufferedSource
 
 private const val TAG = "IncitoParser"
 
-//This dispatcher is optimized to perform CPU-intensive work outside of the main thread.
-suspend fun parseIncitoJson(json: String): Map<IncitoViewId, IncitoOffer>? = withContext(Dispatchers.Default) {
-        TjekLogCat.v("$TAG: convert string to JSON.....")
-
-        val initialView = try {
-            val document = JSONObject(json)
-            document.getJSONObject("root_view")
-        } catch (e: JSONException) {
-            e.printStackTrace()
-            null
-        }
-
-        initialView?.let {
-            TjekLogCat.v("$TAG running......")
+private val documentOptions = JsonReader.Options.of("root_view")
+private val viewOptions = JsonReader.Options.of("id", "role", "meta", "feature_labels", "child_views")
+private val metaOptions = JsonReader.Options.of("tjek.offer.v1")
+private val offerOptions = JsonReader.Options.of("title", "description", "link")
 
-            val offersMap: MutableMap<String, IncitoOffer> = mutableMapOf()
+private class OfferMeta(
+    val title: String,
+    val description: String,
+    val link: String
+)
 
-            // "rootView" is the initial viewId
-            getOffersId(offersMap, initialView)
-
-            TjekLogCat.v("$TAG finished")
+//This dispatcher is optimized to perform CPU-intensive work outside of the main thread.
+suspend fun parseIncitoJson(json: String): Map<IncitoViewId, IncitoOffer>? = withContext(Dispatchers.Default) {
+        parseIncitoOffers(Buffer().writeUtf8(json))
+    }
 
-            // return the map
-            offersMap
+/*
+  Streaming parser: the offers are read while the json is consumed, without building the whole document in memory.
+  When the source is a pipe fed by the download, the parsing runs in parallel with it.
+  It blocks until the source is exhausted and it closes it when done.
+*/
+internal fun parseIncitoOffers(source: BufferedSource): Map<IncitoViewId, IncitoOffer>? {
+    TjekLogCat.v("$TAG running......")
+    return try {
+        val offersMap: MutableMap<String, IncitoOffer> = mutableMapOf()
+        val reader = JsonReader.of(source)
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.selectName(documentOptions)) {
+                // "rootView" is the initial view
+                0 -> if (reader.peek() == JsonReader.Token.BEGIN_OBJECT) getOffersId(offersMap, reader) else reader.skipValue()
+                else -> {
+                    reader.skipName()
+                    reader.skipValue()
+                }
+            }
         }
+        reader.endObject()
+        TjekLogCat.v("$TAG finished")
+        offersMap
+    } catch (e: Exception) {
+        TjekLogCat.v("$TAG -> parse error: ${e.message}")
+        null
+    } finally {
+        // let the writer know we're done
+        source.close()
     }
+}
 
 
 /*
   For every view, it iterates recursively on all child views and checks if the view is an offer.
   in case it is, it'll save the viewId and the metadata.
+  The keys of a view can come in any order, so the view is added only after reading all of them.
 */
-private fun getOffersId(offersMap: MutableMap<String, IncitoOffer>, view: JSONObject) {
-    try {
-        // not all views have an id, so in case it's missing it'll be the parent id
-        val viewId = view.optString("id")
+private fun getOffersId(offersMap: MutableMap<String, IncitoOffer>, reader: JsonReader) {
+    // not all views have an id, so in case it's missing it'll be the parent id
+    var viewId = ""
+    var isOffer = false
+    var offerMeta: OfferMeta? = null
+    val featureLabels: MutableList<String> = ArrayList()
 
-        // examine all child views
-        if (view.has("child_views")) {
-            val childViews = view.getJSONArray("child_views")
-            for (i in 0 until childViews.length()) {
-                getOffersId(offersMap, childViews.getJSONObject(i))
+    reader.beginObject()
+    while (reader.hasNext()) {
+        when (reader.selectName(viewOptions)) {
+            0 -> viewId = reader.nextStringOrNull() ?: ""
+            1 -> isOffer = reader.nextStringOrNull() == "offer"
+            2 -> offerMeta = readOfferMeta(reader)
+            // get feature labels
+            // THIS IS ON THE VIEW OBJ, NOT IN THE META
+            3 -> {
+                if (reader.peek() == JsonReader.Token.BEGIN_ARRAY) {
+                    reader.beginArray()
+                    while (reader.hasNext()) {
+                        reader.nextStringOrNull()?.let { featureLabels.add(it) }
+                    }
+                    reader.endArray()
+                } else {
+                    reader.skipValue()
+                }
             }
-        }
-
-        // check the role only for views with id
-        if (viewId.isNotBlank() && view.has("role") && view.getString("role") == "offer") {
-            val tjekOffer = view.getJSONObject("meta").getJSONObject("tjek.offer.v1")
-            val title = tjekOffer.optString("title")
-            var description: String? = ""
-            var link: String? = ""
-            val list: MutableList<String> = ArrayList()
-            if (tjekOffer.has("description")) {
-                description = tjekOffer.optString("description")
+            // examine all child views
+            4 -> {
+                if (reader.peek() == JsonReader.Token.BEGIN_ARRAY) {
+                    reader.beginArray()
+                    while (reader.hasNext()) {
+                        if (reader.peek() == JsonReader.Token.BEGIN_OBJECT) getOffersId(offersMap, reader) else reader.skipValue()
+                    }
+                    reader.endArray()
+                } else {
+                    reader.skipValue()
+                }
             }
-            if (tjekOffer.has("link")) {
-                link = tjekOffer.optString("link")
+            else -> {
+                reader.skipName()
+                reader.skipValue()
             }
+        }
+    }
+    reader.endObject()
 
-            // get feature labels
-            // THIS IS ON THE VIEW OBJ, NOT IN THE META
-            if (view.has("feature_labels")) {
-                val fl = view.getJSONArray("feature_labels")
-                for (i in 0 until fl.length()) {
-                    list.add(fl.getString(i))
+    // check the role only for views with id
+    val meta = offerMeta
+    if (viewId.isNotBlank() && isOffer && meta != null) {
+        // add the incito offer to the map
+        offersMap[viewId] = IncitoOffer(
+            viewId = viewId,
+            title = meta.title,
+            description = meta.description,
+            link = Uri.parse(meta.link),
+            featureLabels = featureLabels)
+    }
+}
+
+private fun readOfferMeta(reader: JsonReader): OfferMeta? {
+    if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+        reader.skipValue()
+        return null
+    }
+    var offerMeta: OfferMeta? = null
+    reader.beginObject()
+    while (reader.hasNext()) {
+        val index = reader.selectName(metaOptions)
+        if (index == 0 && reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+            var title = ""
+            var description = ""
+            var link = ""
+            reader.beginObject()
+            while (reader.hasNext()) {
+                when (reader.selectName(offerOptions)) {
+                    0 -> title = reader.nextStringOrNull() ?: ""
+                    1 -> description = reader.nextStringOrNull() ?: ""
+                    2 -> link = reader.nextStringOrNull() ?: ""
+                    else -> {
+                        reader.skipName()
+                        reader.skipValue()
+                    }
                 }
             }
+            reader.endObject()
+            offerMeta = OfferMeta(title, description, link)
+        } else {
+            if (index == -1) reader.skipName()
+            reader.skipValue()
+        }
+    }
+    reader.endObject()
+    return offerMeta
+}
 
-            // add the incito offer to the map
-            offersMap[viewId] = IncitoOffer(
-                viewId = viewId,
-                title = title,
-                description = description,
-                link = Uri.parse(link),
-                featureLabels = list)
+// Strings, numbers and booleans are read as strings (like JSONObject.optString), anything else is skipped
+private fun JsonReader.nextStringOrNull(): String? {
+    return when (peek()) {
+        JsonReader.Token.STRING, JsonReader.Token.NUMBER -> nextString()
+        JsonReader.Token.BOOLEAN -> nextBoolean().toString()
+        else -> {
+            skipValue()
+            null
         }
-    } catch (e: JSONException) {
-        TjekLogCat.v("$TAG -> parse error: ${e.message}")
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,81 @@
+package com.tjek.sdk.publicationviewer.incito
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.view.Choreographer
+import java.util.concurrent.TimeUnit
+
+/**
+ * The javascript bridge calls `progress` on a binder thread for every scroll tick.
+ * This class keeps only the latest value and delivers it on the main thread, at most once per vsync
+ * (and no more often than `throttleMillis`, if set).
+ *
+ * It has to be created on the main thread, because that's where the Choreographer lives.
+ */
+internal class IncitoProgressDispatcher(
+    throttleMillis: Long,
+    private val onProgress: (progress: Float, verticalScrollOffset: Int) -> Unit
+) : Choreographer.FrameCallback {
+
+    private val choreographer = Choreographer.getInstance()
+    private val throttleNanos = TimeUnit.MILLISECONDS.toNanos(throttleMillis.coerceAtLeast(0))
+
+    private val lock = Any()
+    private var pendingProgress = 0f
+    private var pendingOffset = 0
+    private var hasPending = false
+    private var frameScheduled = false
+    private var lastDispatchNanos = 0L
+
+    // Can be called from any thread
+    fun post(progress: Float, verticalScrollOffset: Int) {
+        synchronized(lock) {
+            pendingProgress = progress
+            pendingOffset = verticalScrollOffset
+            hasPending = true
+            if (frameScheduled) return
+            frameScheduled = true
+        }
+        choreographer.postFrameCallback(this)
+    }
+
+    override fun doFrame(frameTimeNanos: Long) {
+        val progress: Float
+        val offset: Int
+        synchronized(lock) {
+            val wait = lastDispatchNanos + throttleNanos - frameTimeNanos
+            if (lastDispatchNanos > 0 && wait > 0) {
+                // keep the latest value and try again when the throttle window is over
+                choreographer.postFrameCallbackDelayed(this, TimeUnit.NANOSECONDS.toMillis(wait))
+                return
+            }
+            frameScheduled = false
+            if (!hasPending) return
+            hasPending = false
+            lastDispatchNanos = frameTimeNanos
+            progress = pendingProgress
+            offset = pendingOffset
+        }
+        onProgress(progress, offset)
+    }
+
+    fun cancel() {
+        choreographer.removeFrameCallback(this)
+        synchronized(lock) {
+            frameScheduled = false
+            hasPending = false
+        }
+    }
+}
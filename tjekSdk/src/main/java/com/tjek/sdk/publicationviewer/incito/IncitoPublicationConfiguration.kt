@@ -31,6 +31,14 @@ data class IncitoPublicationConfiguration(
     val openAtViewWithId: String? = null,
 
     // Feature label recorded by your app in previous incito sessions
-    val recordedFeatureLabel: ArrayList<String>? = null
+    val recordedFeatureLabel: ArrayList<String>? = null,
+
+    // Minimum time between two progress updates sent by the renderer while scrolling.
+    // With 0, the updates are only coalesced to one per frame
+    val progressThrottleMillis: Long = 0,
+
+    // Observe which offers are on screen and report them to IncitoEventListener.onOffersVisibilityChanged
+    // and onOfferViewed. Off by default: the renderer doesn't observe the offers and nothing is reported
+    val reportOfferVisibility: Boolean = false
 
 ): Parcelable
@@ -38,6 +38,7 @@ import com.tjek.sdk.DeviceOrientation
 import com.tjek.sdk.TjekLogCat
 import com.tjek.sdk.api.Id
 import com.tjek.sdk.api.IncitoData
+import com.tjek.sdk.api.models.IncitoOffer
 import com.tjek.sdk.api.models.IncitoViewId
 import com.tjek.sdk.api.models.PublicationV2
 import com.tjek.sdk.api.remote.ResponseType
@@ -64,6 +65,7 @@ class IncitoPublicationFragment :
 
     companion object {
         private const val MAX_WIDTH_MINIMUM_VALUE = 100
+        private const val OFFER_VISIBLE_THRESHOLD = 0.5f
         private const val LOCAL_HTML_RENDERER = "file:///android_asset/incito/webview/index-1.0.0.html"
         private const val REMOTE_HTML_RENDERER = "https://incito-webview.shopgun.com/index-1.0.0.html"
         var LOAD_LOCAL_RENDERER = false // for debug purposes
@@ -109,6 +111,11 @@ class IncitoPublicationFragment :
     private var hasSentOpenEvent = false
     private var errorFrame: FrameLayout? = null
     private var loaderFrame: FrameLayout? = null
+    private var progressDispatcher: IncitoProgressDispatcher? = null
+
+    // offers already reported as viewed in this session and whether the renderer is reporting the offers visibility
+    private val viewedOffers = HashSet<IncitoViewId>()
+    private var offerVisibilityObserved = false
 
 
     // for the long click, store the last coordinates from onTouch and then call
@@ -190,6 +197,7 @@ class IncitoPublicationFragment :
             savedInstanceState.getParcelable<IncitoPublicationSavedState>(saved_state)?.let { state ->
                 config = state.config
                 hasSentOpenEvent = state.hasSentOpenEvent
+                viewedOffers.addAll(state.viewedOffers)
             }
         } else {
             arguments?.let {
@@ -225,6 +233,10 @@ class IncitoPublicationFragment :
         //Screen density
         density = resources.displayMetrics.density
 
+        progressDispatcher = IncitoProgressDispatcher(config.progressThrottleMillis) { progress, offset ->
+            eventListener?.onProgressChanged(progress, offset)
+        }
+
         viewModel.incitoData.observe(this) { callJavascriptInit(it, isRendererLoaded) }
         viewModel.loadingState.observe(this) {
             when(it) {
@@ -236,7 +248,12 @@ class IncitoPublicationFragment :
                 PublicationLoadingState.Successful -> {} // nothing to do here. The observer on the incito data will handle the init
             }
         }
-        viewModel.offers.observe(this) { map -> map?.let { eventListener?.onOfferListReady(it) } }
+        viewModel.offers.observe(this) { map ->
+            map?.let {
+                eventListener?.onOfferListReady(it)
+                observeOffersVisibility()
+            }
+        }
     }
 
     private fun showLoader() {
@@ -308,13 +325,16 @@ class IncitoPublicationFragment :
     override fun onSaveInstanceState(outState: Bundle) {
         outState.putParcelable(saved_state, IncitoPublicationSavedState(
             config = config,
-            hasSentOpenEvent = hasSentOpenEvent
+            hasSentOpenEvent = hasSentOpenEvent,
+            viewedOffers = ArrayList(viewedOffers)
         ))
         super.onSaveInstanceState(outState)
     }
 
     override fun onDestroy() {
         super.onDestroy()
+        progressDispatcher?.cancel()
+        progressDispatcher = null
         incitoWebView?.removeAllViews()
         incitoWebView?.destroy()
         incitoWebView = null
@@ -328,7 +348,7 @@ class IncitoPublicationFragment :
         webSettings?.displayZoomControls = false
         webSettings?.builtInZoomControls = false
         webSettings?.textZoom = 100
-        incitoWebView?.addJavascriptInterface(this, "androidJSInterface")
+        incitoWebView?.addJavascriptInterface(this, JS_INTERFACE_NAME)
 
         // Catch javascript console messages
         incitoWebView?.webChromeClient = object : WebChromeClient() {
@@ -392,6 +412,7 @@ class IncitoPublicationFragment :
                 // if we finished loading the renderer, check if we already have the incito data
                 if (url == REMOTE_HTML_RENDERER || url == LOCAL_HTML_RENDERER) {
                     isRendererLoaded = true
+                    view.evaluateJavascript(progressThrottleScript(config.progressThrottleMillis), null)
                     callJavascriptInit(viewModel.incitoData.value, isRendererLoaded)
                 }
             }
@@ -460,6 +481,42 @@ class IncitoPublicationFragment :
         setVisible(webview = true, loader = false, error = false)
     }
 
+    // Start the visibility tracking in the renderer once the incito is rendered and we know where the offers are
+    private fun observeOffersVisibility() {
+        if (!config.reportOfferVisibility || offerVisibilityObserved || !allRendered) return
+        val offers = viewModel.offers.value ?: return
+        if (offers.isEmpty()) return
+        offerVisibilityObserved = true
+        val viewIds = JSONArray(offers.keys).toString()
+        incitoWebView?.evaluateJavascript(offerVisibilityScript(viewIds, OFFER_VISIBLE_THRESHOLD)) { observed ->
+            // the script returns how many offer views it found in the renderer
+            val count = observed?.toIntOrNull() ?: 0
+            if (count < offers.size) {
+                TjekLogCat.w("offer visibility: ${offers.size - count} of ${offers.size} offer views not found in the incito")
+            }
+        }
+    }
+
+    private fun onOffersVisibilityChanged(visible: List<IncitoOffer>, hidden: List<IncitoOffer>) {
+        eventListener?.onOffersVisibilityChanged(visible, hidden)
+        visible.forEach {
+            if (viewedOffers.add(it.viewId)) {
+                eventListener?.onOfferViewed(it, viewModel.publication.value)
+            }
+        }
+    }
+
+    private fun getOffersFromJson(viewIds: String?): List<IncitoOffer> {
+        if (viewIds.isNullOrEmpty()) return emptyList()
+        return try {
+            val jsonArray = JSONArray(viewIds)
+            (0 until jsonArray.length()).mapNotNull { viewModel.getOfferFromMap(jsonArray.getString(it)) }
+        } catch (e: Exception) {
+            TjekLogCat.printStackTrace(e)
+            emptyList()
+        }
+    }
+
 
     /** Javascript Interface **********************************************************************/
 
@@ -480,7 +537,17 @@ class IncitoPublicationFragment :
     @JavascriptInterface
     fun progress(progress: Float, scrollOffset: Float) {
         yOffset = (scrollOffset * density).roundToInt()
-        eventListener?.onProgressChanged(progress, yOffset)
+        // coalesced to one update per frame on the main thread
+        progressDispatcher?.post(progress, yOffset)
+    }
+
+    @JavascriptInterface
+    fun offersVisibilityChanged(visibleViewIds: String?, hiddenViewIds: String?) {
+        // one call per frame with all the changes, so the offers are resolved here and sent to the main thread together
+        val visible = getOffersFromJson(visibleViewIds)
+        val hidden = getOffersFromJson(hiddenViewIds)
+        if (visible.isEmpty() && hidden.isEmpty()) return
+        activity?.runOnUiThread { onOffersVisibilityChanged(visible, hidden) }
     }
 
     @JavascriptInterface
@@ -488,6 +555,7 @@ class IncitoPublicationFragment :
         TjekLogCat.v("init done: incito fully rendered")
         allRendered = true
         activity?.runOnUiThread {
+            observeOffersVisibility()
             when {
                 openAtViewWithId != null -> {
                     // call the javascript function to scroll to the given view
@@ -20,5 +20,6 @@ import kotlinx.parcelize.Parcelize
 @Parcelize
 data class IncitoPublicationSavedState(
     val config: IncitoPublicationConfiguration,
-    val hasSentOpenEvent: Boolean
+    val hasSentOpenEvent: Boolean,
+    val viewedOffers: ArrayList<String> = ArrayList()
 ): Parcelable
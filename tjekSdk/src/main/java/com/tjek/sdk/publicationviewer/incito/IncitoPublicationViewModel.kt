@@ -28,9 +28,14 @@ import com.tjek.sdk.api.remote.request.FeatureLabel
 import com.tjek.sdk.api.IncitoData
 import com.tjek.sdk.api.remote.request.IncitoDeviceCategory
 import com.tjek.sdk.api.remote.request.IncitoOrientation
+import com.tjek.sdk.publicationviewer.IncitoPublicationSession
 import com.tjek.sdk.publicationviewer.PublicationLoadingState
+import com.tjek.sdk.publicationviewer.PublicationSessionCache
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
 import kotlinx.coroutines.launch
+import okio.Pipe
+import okio.buffer
 
 class IncitoPublicationViewModel : ViewModel() {
 
@@ -59,10 +64,12 @@ class IncitoPublicationViewModel : ViewModel() {
         featureLabels: List<FeatureLabel>?,
         locale: String?
     ) {
+        val requestKey = requestKey(publication.id, deviceCategory, orientation, pixelRatio, maxWidth, featureLabels, locale)
+        if (loadSession(requestKey)) return
         _publication.postValue(publication)
         if (publication.hasIncitoPublication) {
             _loadingState.postValue(PublicationLoadingState.Loading)
-            getIncitoData(publication.id, deviceCategory, orientation, pixelRatio, maxWidth, featureLabels, locale)
+            getIncitoData(publication, requestKey, deviceCategory, orientation, pixelRatio, maxWidth, featureLabels, locale)
         } else {
             _loadingState.postValue(PublicationLoadingState.Failed(ResponseType.Error(message = "Incito not available for this publication")))
         }
@@ -77,6 +84,7 @@ class IncitoPublicationViewModel : ViewModel() {
         featureLabels: List<FeatureLabel>?,
         locale: String?
     ) {
+        if (loadSession(requestKey(id, deviceCategory, orientation, pixelRatio, maxWidth, featureLabels, locale))) return
         _loadingState.postValue(PublicationLoadingState.Loading)
         viewModelScope.launch(Dispatchers.IO) {
             when(val res = TjekAPI.getPublication(id)) {
@@ -88,7 +96,17 @@ class IncitoPublicationViewModel : ViewModel() {
 
     fun getOfferFromMap(viewId: IncitoViewId): IncitoOffer? = _offers.value?.get(viewId)?.copy(publicationId = publication.value?.id ?: "")
 
-    private fun getIncitoData(
+    // The same incito requested a moment ago (by any viewer) is shown without being fetched and parsed again
+    private fun loadSession(requestKey: String): Boolean {
+        val session = PublicationSessionCache.getIncito(requestKey) ?: return false
+        _publication.postValue(session.publication)
+        _loadingState.postValue(PublicationLoadingState.Successful)
+        _incitoData.postValue(session.incitoData)
+        _offers.postValue(session.offers)
+        return true
+    }
+
+    private fun requestKey(
         id: Id,
         deviceCategory: IncitoDeviceCategory,
         orientation: IncitoOrientation,
@@ -96,21 +114,49 @@ class IncitoPublicationViewModel : ViewModel() {
         maxWidth: Int,
         featureLabels: List<FeatureLabel>?,
         locale: String?
+    ): String = "incito:$id:$deviceCategory:$orientation:$pixelRatio:$maxWidth:$featureLabels:$locale"
+
+    private fun getIncitoData(
+        publication: PublicationV2,
+        requestKey: String,
+        deviceCategory: IncitoDeviceCategory,
+        orientation: IncitoOrientation,
+        pixelRatio: Float,
+        maxWidth: Int,
+        featureLabels: List<FeatureLabel>?,
+        locale: String?
     ) {
         viewModelScope.launch(Dispatchers.IO) {
-            when(val res = TjekAPI.getIncito(id, deviceCategory, orientation, pixelRatio, maxWidth, featureLabels, locale)) {
-                is ResponseType.Error -> _loadingState.postValue(PublicationLoadingState.Failed(res))
+            // The response is copied into a pipe while it's downloaded, so the offers are parsed during the download.
+            // The renderer gets the data as soon as the download is over and the offers follow right after,
+            // while the incito is rendered.
+            val pipe = Pipe(OFFER_PARSER_BUFFER_SIZE)
+            val offers = async(Dispatchers.IO) { parseIncitoOffers(pipe.source.buffer()) }
+            val res = try {
+                TjekAPI.getIncito(publication.id, deviceCategory, orientation, pixelRatio, maxWidth, featureLabels, locale, tee = pipe.sink)
+            } finally {
+                pipe.sink.close()
+            }
+            when(res) {
+                is ResponseType.Error -> {
+                    pipe.source.close()
+                    offers.cancel()
+                    _loadingState.postValue(PublicationLoadingState.Failed(res))
+                }
                 is ResponseType.Success -> {
                     _loadingState.postValue(PublicationLoadingState.Successful)
                     _incitoData.postValue(res.data)
-                    createOfferMap(res.data)
+                    val offerMap = offers.await()
+                    _offers.postValue(offerMap)
+                    if (offerMap != null) {
+                        PublicationSessionCache.put(requestKey, IncitoPublicationSession(publication, res.data, offerMap))
+                    }
                 }
             }
         }
     }
 
-    // Go through the json data looking for offers
-    private suspend fun createOfferMap(incitoJson: String) {
-        _offers.postValue(parseIncitoJson(incitoJson))
+    companion object {
+        private const val OFFER_PARSER_BUFFER_SIZE = 64 * 1024L
     }
 }
\ No newline at end of file
@@ -0,0 +1,271 @@
+package com.tjek.sdk.publicationviewer.paged
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.graphics.RectF
+import android.util.SparseArray
+import com.tjek.sdk.api.models.PublicationHotspotV2
+import java.util.IdentityHashMap
+import kotlin.math.abs
+import kotlin.math.ceil
+import kotlin.math.sqrt
+
+/**
+ * Compact copy of the hotspots of a publication, built once when the hotspots are loaded.
+ *
+ * A location is the polygon of a hotspot on a page. The vertices of all the locations are stored in two
+ * contiguous float arrays and the bounds of every location are precomputed, so hit-testing and computing
+ * the highlight bounds don't allocate anything. The hotspots themselves (with the offer) are stored by index.
+ *
+ * Every page also has a uniform grid over its (normalized) area, and every cell holds the locations whose bounds
+ * overlap it. A lookup reads a single cell and runs the exact polygon test only on the locations in there.
+ */
+internal class HotspotTable(hotspots: List<PublicationHotspotV2>) {
+
+    companion object {
+        // The grid of a page has at most MAX_GRID_SIZE * MAX_GRID_SIZE cells
+        private const val MAX_GRID_SIZE = 16
+
+        // Same as PublicationHotspotV2
+        private const val SIGNIFICANT_AREA: Double = 0.02
+
+        // Values out of the page (polygons can slightly exceed it) fall in the border cells
+        private fun cellIndex(value: Float, size: Int): Int = (value * size).toInt().coerceIn(0, size - 1)
+    }
+
+    // The locations in cell i are cellLocations[cellStart[i] until cellStart[i + 1]]
+    private class PageGrid(val size: Int, val cellStart: IntArray, val cellLocations: IntArray) {
+
+        fun cell(x: Float, y: Float): Int = cellIndex(y, size) * size + cellIndex(x, size)
+    }
+
+    private val hotspots: Array<PublicationHotspotV2> = hotspots.toTypedArray()
+    private val hotspotIndexes = IdentityHashMap<PublicationHotspotV2, Int>(hotspots.size)
+
+    // The locations of hotspot i are firstLocation[i] until firstLocation[i + 1]
+    private val firstLocation = IntArray(hotspots.size + 1)
+
+    // Indexed by location
+    private val locationHotspot: IntArray
+    private val locationPage: IntArray
+    private val firstVertex: IntArray
+    private val left: FloatArray
+    private val top: FloatArray
+    private val right: FloatArray
+    private val bottom: FloatArray
+
+    private val xs: FloatArray
+    private val ys: FloatArray
+
+    private val pages = SparseArray<PageGrid>()
+
+    // Reused by findHotspots, big enough for the fullest cell
+    private val hits: IntArray
+
+    val size: Int
+        get() = hotspots.size
+
+    init {
+        var locationCount = 0
+        var vertexCount = 0
+        hotspots.forEachIndexed { i, h ->
+            hotspotIndexes[h] = i
+            firstLocation[i] = locationCount
+            for (p in 0 until h.pageLocations.size()) {
+                vertexCount += h.pageLocations.valueAt(p).npoints
+            }
+            locationCount += h.pageLocations.size()
+        }
+        firstLocation[hotspots.size] = locationCount
+
+        locationHotspot = IntArray(locationCount)
+        locationPage = IntArray(locationCount)
+        firstVertex = IntArray(locationCount + 1)
+        left = FloatArray(locationCount)
+        top = FloatArray(locationCount)
+        right = FloatArray(locationCount)
+        bottom = FloatArray(locationCount)
+        xs = FloatArray(vertexCount)
+        ys = FloatArray(vertexCount)
+
+        var location = 0
+        var vertex = 0
+        hotspots.forEachIndexed { i, h ->
+            for (p in 0 until h.pageLocations.size()) {
+                val polygon = h.pageLocations.valueAt(p)
+                locationHotspot[location] = i
+                locationPage[location] = h.pageLocations.keyAt(p)
+                firstVertex[location] = vertex
+                var minX = Float.MAX_VALUE
+                var minY = Float.MAX_VALUE
+                var maxX = -Float.MAX_VALUE
+                var maxY = -Float.MAX_VALUE
+                for (v in 0 until polygon.npoints) {
+                    val x = polygon.xpoints[v]
+                    val y = polygon.ypoints[v]
+                    xs[vertex] = x
+                    ys[vertex] = y
+                    vertex++
+                    minX = minOf(minX, x)
+                    minY = minOf(minY, y)
+                    maxX = maxOf(maxX, x)
+                    maxY = maxOf(maxY, y)
+                }
+                if (polygon.npoints == 0) {
+                    minX = 0f; minY = 0f; maxX = 0f; maxY = 0f
+                }
+                left[location] = minX
+                top[location] = minY
+                right[location] = maxX
+                bottom[location] = maxY
+                location++
+            }
+        }
+        firstVertex[locationCount] = vertex
+
+        hits = IntArray(buildGrids(locationCount))
+    }
+
+    // Returns the size of the fullest cell
+    private fun buildGrids(locationCount: Int): Int {
+        // locations of each page, in ascending order so the lookups keep the order of the hotspots list
+        val locationsOnPage = SparseArray<MutableList<Int>>()
+        for (l in 0 until locationCount) {
+            val page = locationPage[l]
+            val list = locationsOnPage.get(page) ?: ArrayList<Int>().also { locationsOnPage.put(page, it) }
+            list.add(l)
+        }
+
+        var maxCellSize = 0
+        for (p in 0 until locationsOnPage.size()) {
+            val locations = locationsOnPage.valueAt(p)
+            // about one location per cell
+            val size = ceil(sqrt(locations.size.toDouble())).toInt().coerceIn(1, MAX_GRID_SIZE)
+            val cells = Array(size * size) { ArrayList<Int>() }
+            for (l in locations) {
+                if (left[l] >= right[l] || top[l] >= bottom[l]) continue
+                for (row in cellIndex(top[l], size)..cellIndex(bottom[l], size)) {
+                    for (column in cellIndex(left[l], size)..cellIndex(right[l], size)) {
+                        cells[row * size + column].add(l)
+                    }
+                }
+            }
+            val cellStart = IntArray(cells.size + 1)
+            val cellLocations = IntArray(cells.sumOf { it.size })
+            var n = 0
+            cells.forEachIndexed { i, cell ->
+                cellStart[i] = n
+                for (l in cell) cellLocations[n++] = l
+                maxCellSize = maxOf(maxCellSize, cell.size)
+            }
+            cellStart[cells.size] = n
+            pages.put(locationsOnPage.keyAt(p), PageGrid(size, cellStart, cellLocations))
+        }
+        return maxCellSize
+    }
+
+    fun getHotspot(index: Int): PublicationHotspotV2 = hotspots[index]
+
+    /**
+     * Find the hotspots at the given point, without allocating anything.
+     * The indexes of the hotspots are written in [out], that must be at least [maxHits] long.
+     *
+     * @param visiblePages the pages of the spread
+     * @param page the page containing the point
+     * @param x x-coordinate on the page, as a fraction of the page width
+     * @param y y-coordinate on the page, as a fraction of the page height
+     * @return the number of hotspots found
+     */
+    fun findHotspots(visiblePages: IntArray, page: Int, x: Float, y: Float, out: IntArray): Int {
+        val grid = pages.get(page) ?: return 0
+        val cell = grid.cell(x, y)
+        var count = 0
+        for (c in grid.cellStart[cell] until grid.cellStart[cell + 1]) {
+            val l = grid.cellLocations[c]
+            if (contains(l, x, y) && isAreaSignificant(l, visiblePages)) {
+                out[count++] = locationHotspot[l]
+            }
+        }
+        return count
+    }
+
+    val maxHits: Int
+        get() = hits.size
+
+    // Main thread only, it reuses the same buffer
+    fun findHotspots(visiblePages: IntArray, page: Int, x: Float, y: Float): List<PublicationHotspotV2> {
+        val count = findHotspots(visiblePages, page, x, y, hits)
+        if (count == 0) return emptyList()
+        return List(count) { hotspots[hits[it]] }
+    }
+
+    /**
+     * Same as [PublicationHotspotV2.getBoundsForPages], but the result is written in [out].
+     * @return false if the hotspot isn't in this table or isn't on any of the pages
+     */
+    fun getBoundsForPages(hotspot: PublicationHotspotV2, pages: IntArray, out: RectF): Boolean {
+        val h = hotspotIndexes[hotspot] ?: return false
+        var found = false
+        val pagesLength = pages.size.toFloat()
+        val pageOffset = 1f / pagesLength
+        for (i in pages.indices) {
+            val l = findLocation(h, pages[i])
+            if (l < 0) continue
+            val offset = pageOffset * i.toFloat()
+            val rLeft = left[l] / pagesLength + offset
+            val rRight = right[l] / pagesLength + offset
+            if (found) {
+                out.union(rLeft, top[l], rRight, bottom[l])
+            } else {
+                out.set(rLeft, top[l], rRight, bottom[l])
+                found = true
+            }
+        }
+        return found
+    }
+
+    private fun findLocation(hotspot: Int, page: Int): Int {
+        for (l in firstLocation[hotspot] until firstLocation[hotspot + 1]) {
+            if (locationPage[l] == page) return l
+        }
+        return -1
+    }
+
+    // Same as PolygonF.contains
+    private fun contains(location: Int, x: Float, y: Float): Boolean {
+        if (x < left[location] || x > right[location] || y < top[location] || y > bottom[location]) return false
+        val first = firstVertex[location]
+        val last = firstVertex[location + 1] - 1
+        var inside = false
+        var j = last
+        for (i in first..last) {
+            if (((ys[i] > y) != (ys[j] > y)) &&
+                (x < (xs[j] - xs[i]) * (y - ys[i]) / (ys[j] - ys[i]) + xs[i])) {
+                inside = !inside
+            }
+            j = i
+        }
+        return inside
+    }
+
+    // Same as PublicationHotspotV2.isAreaSignificant
+    private fun isAreaSignificant(location: Int, visiblePages: IntArray): Boolean {
+        val h = locationHotspot[location]
+        val pageCount = firstLocation[h + 1] - firstLocation[h]
+        if (!(visiblePages.size == 1 && pageCount > 1)) return true
+        val area = (abs(bottom[location] - top[location]) * abs(right[location] - left[location])).toDouble()
+        return area > SIGNIFICANT_AREA
+    }
+}
@@ -0,0 +1,97 @@
+package com.tjek.sdk.publicationviewer.paged
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.content.Context
+import com.bumptech.glide.Glide
+import com.tjek.sdk.TjekLogCat
+import com.tjek.sdk.publicationviewer.paged.libs.verso.VersoPageChangeListener
+import com.tjek.sdk.publicationviewer.paged.views.PageTileView
+import com.tjek.sdk.publicationviewer.paged.views.PageView
+import kotlin.math.abs
+
+/**
+ * Keeps the bitmaps shown by all the attached PageViews (so across all the live VersoPageViewFragments) and the
+ * decoded zoom tiles within a byte budget. When the budget is exceeded, the images of the pages farthest from the
+ * current spread are released, then the least recently drawn tiles.
+ * The pages of the current spread are never released, and a released page loads its image again when it
+ * becomes visible or when the user moves next to it.
+ * A released bitmap goes back to Glide's memory cache, so the cache is cleared after a release to free it.
+ */
+internal class PageImageMemoryManager(
+    val format: PageImageFormat,
+    budgetBytes: Long
+) : VersoPageChangeListener {
+
+    companion object {
+        // Released pages this close to the current spread are loaded again when the page changes
+        private const val RESTORE_DISTANCE = 1
+    }
+
+    private val budget = if (budgetBytes > 0) budgetBytes else Runtime.getRuntime().maxMemory() / 4
+    private val pageViews = ArrayList<PageView>()
+    private var currentPages = IntArray(0)
+
+    fun register(pageView: PageView) {
+        if (!pageViews.contains(pageView)) pageViews.add(pageView)
+    }
+
+    fun unregister(pageView: PageView) {
+        pageViews.remove(pageView)
+    }
+
+    fun onImageLoaded(pageView: PageView) {
+        trim()
+    }
+
+    override fun onPagesChanged(currentPosition: Int, currentPages: IntArray?, previousPosition: Int, previousPages: IntArray?) {
+        this.currentPages = currentPages ?: IntArray(0)
+        for (view in pageViews) {
+            if (distance(view.page) <= RESTORE_DISTANCE) view.restoreImage()
+        }
+        trim()
+    }
+
+    override fun onPagesScrolled(currentPosition: Int, currentPages: IntArray?, previousPosition: Int, previousPages: IntArray?) {}
+    override fun onVisiblePageIndexesChanged(pages: IntArray?, added: IntArray?, removed: IntArray?) {}
+
+    private fun trim() {
+        var pageBytes = pageViews.sumOf { it.imageByteCount.toLong() }
+        if (pageBytes + PageTileView.cachedBytes <= budget) return
+        val candidates = pageViews
+            .filter { distance(it.page) > 0 && it.imageByteCount > 0 }
+            .sortedByDescending { distance(it.page) }
+        var releasedFrom: Context? = null
+        for (view in candidates) {
+            if (pageBytes + PageTileView.cachedBytes <= budget) break
+            pageBytes -= view.imageByteCount
+            view.releaseImage()
+            releasedFrom = view.context
+        }
+        // The bitmaps of the released pages aren't in use anymore, but Glide keeps them in its memory cache
+        releasedFrom?.let { Glide.get(it).clearMemory() }
+        if (pageBytes + PageTileView.cachedBytes > budget) {
+            PageTileView.trimCache(budget - pageBytes)
+        }
+        if (pageBytes > budget) {
+            TjekLogCat.w("Page images use $pageBytes bytes, over the budget of $budget bytes")
+        }
+    }
+
+    private fun distance(page: Int): Int {
+        if (currentPages.isEmpty()) return 0
+        return currentPages.minOf { abs(it - page) }
+    }
+}
@@ -0,0 +1,99 @@
+package com.tjek.sdk.publicationviewer.paged
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.content.Context
+import com.bumptech.glide.Glide
+import com.bumptech.glide.load.Option
+import com.bumptech.glide.load.Options
+import com.bumptech.glide.load.model.ModelLoader
+import com.bumptech.glide.load.model.ModelLoaderFactory
+import com.bumptech.glide.load.model.MultiModelLoaderFactory
+import com.tjek.sdk.api.models.ImageUrlsV2
+import java.io.InputStream
+
+// The image variants of a page. The api doesn't tell their sizes: the view image is meant for the unzoomed page,
+// the zoom image for a zoomed page and the thumb image for the placeholders
+internal enum class PageImageVariant { Thumb, View, Zoom }
+
+/**
+ * Lets Glide load the image of a page from its [ImageUrlsV2], in the variant set with the [VARIANT] option.
+ * The unzoomed pages (and their prefetch) use the view image, the zoom image is downloaded only when a page is zoomed in.
+ * A missing variant falls back to the closest one, and the pages of an offline publication use the images on the disk.
+ *
+ * The url is loaded by the loaders Glide has for strings (remote urls and the files of offline publications),
+ * so the disk cache is shared with the requests made with the url.
+ */
+internal class PageImageModelLoader(
+    private val urlLoader: ModelLoader<String, InputStream>
+) : ModelLoader<ImageUrlsV2, InputStream> {
+
+    companion object {
+        // Part of the memory cache key, so each variant is cached on its own
+        val VARIANT: Option<PageImageVariant> = Option.memory("com.tjek.sdk.PageImageVariant", PageImageVariant.View)
+
+        @Volatile
+        private var registered = false
+
+        // Glide can be initialized by the app (with its own modules), so the loader is added to its registry at runtime
+        fun register(context: Context) {
+            if (registered) return
+            synchronized(this) {
+                if (registered) return
+                Glide.get(context).registry.prepend(ImageUrlsV2::class.java, InputStream::class.java, Factory())
+                registered = true
+            }
+        }
+
+        // The variant for a page shown at the given zoom scale: the view image covers the unzoomed page
+        fun variantFor(zoomScale: Float): PageImageVariant =
+            if (zoomScale > 1f) PageImageVariant.Zoom else PageImageVariant.View
+
+        /**
+         * The url of the [variant], or of the closest variant if it's missing (a larger one first, except for the zoom).
+         * A local file (offline publication) is preferred to a remote url.
+         */
+        fun selectUrl(images: ImageUrlsV2, variant: PageImageVariant): String? {
+            val url = when (variant) {
+                PageImageVariant.Thumb -> images.thumb ?: images.view ?: images.zoom
+                PageImageVariant.View -> images.view ?: images.zoom ?: images.thumb
+                PageImageVariant.Zoom -> images.zoom ?: images.view ?: images.thumb
+            }
+            if (url != null && isRemote(url)) {
+                // The zoom image of an offline publication isn't always downloaded, use the largest image on the disk
+                listOf(images.zoom, images.view, images.thumb).firstOrNull { it != null && !isRemote(it) }?.let { return it }
+            }
+            return url
+        }
+
+        private fun isRemote(url: String) = url.startsWith("http://") || url.startsWith("https://")
+    }
+
+    override fun buildLoadData(model: ImageUrlsV2, width: Int, height: Int, options: Options): ModelLoader.LoadData<InputStream>? {
+        val url = selectUrl(model, options.get(VARIANT) ?: PageImageVariant.View) ?: return null
+        return urlLoader.buildLoadData(url, width, height, options)
+    }
+
+    override fun handles(model: ImageUrlsV2): Boolean = true
+
+    class Factory : ModelLoaderFactory<ImageUrlsV2, InputStream> {
+
+        override fun build(multiFactory: MultiModelLoaderFactory): ModelLoader<ImageUrlsV2, InputStream> {
+            return PageImageModelLoader(multiFactory.build(String::class.java, InputStream::class.java))
+        }
+
+        override fun teardown() { }
+    }
+}
@@ -0,0 +1,176 @@
+package com.tjek.sdk.publicationviewer.paged
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.graphics.Point
+import android.graphics.drawable.Drawable
+import android.os.SystemClock
+import android.util.SparseArray
+import androidx.viewpager.widget.ViewPager
+import com.bumptech.glide.RequestManager
+import com.bumptech.glide.request.target.Target
+import com.tjek.sdk.api.models.ImageUrlsV2
+import com.tjek.sdk.publicationviewer.paged.libs.verso.VersoPageChangeListener
+import com.tjek.sdk.publicationviewer.paged.libs.verso.VersoViewPager
+import com.tjek.sdk.publicationviewer.paged.libs.verso.viewpager.CenteredViewPager
+import com.tjek.sdk.publicationviewer.paged.views.loadPageImage
+import com.tjek.sdk.publicationviewer.paged.views.pageDecodeSize
+import kotlin.math.abs
+import kotlin.math.sign
+
+/**
+ * The pager creates only the spreads within its offscreen limit and a PageView starts loading its image
+ * when it's attached, so a fast swipe reaches spreads that haven't even started the download.
+ *
+ * This class preloads the `view` images of the spreads right after the offscreen ones into Glide's memory cache,
+ * in the direction of travel. The faster the swipe, the more spreads are preloaded.
+ * Preloads that fall out of the window (e.g. the user changed direction) are cancelled.
+ *
+ * The images are requested at the same decode size used by PageView (see pageDecodeSize), so the preloaded image
+ * has the same cache key of the one requested by PageView.
+ */
+internal class PageImagePrefetcher(
+    private val requestManager: RequestManager,
+    private val viewPager: VersoViewPager,
+    private val spreadConfiguration: () -> SpreadConfiguration?,
+    private val distance: Int,
+    private val format: PageImageFormat
+) : CenteredViewPager.OnPageChangeListener, VersoPageChangeListener {
+
+    companion object {
+        // Preload what the user would reach in this time at the current swipe velocity
+        private const val LOOKAHEAD_SECONDS = 1f
+        // Never preload more than distance * MAX_DISTANCE_FACTOR spreads ahead
+        private const val MAX_DISTANCE_FACTOR = 3
+        // Spreads preloaded on the opposite side of the direction of travel
+        private const val BEHIND_DISTANCE = 1
+        // Weight of the newest sample in the velocity moving average
+        private const val VELOCITY_SMOOTHING = 0.3f
+    }
+
+    private class Prefetch(val target: Target<Drawable>, val width: Int, val height: Int)
+
+    private class PageRequest(val page: Int, val images: ImageUrlsV2, val width: Int, val height: Int)
+
+    // keyed by page index, so it survives the change of spreads on rotation
+    private val prefetches = SparseArray<Prefetch>()
+
+    private var position = 0
+    private var direction = 1
+    private var aheadDistance = distance
+
+    // spreads per second
+    private var velocity = 0f
+    private var lastScroll = -1f
+    private var lastScrollTime = 0L
+
+    override fun onPageScrolled(position: Int, positionOffset: Float, positionOffsetPixels: Int) {
+        val scroll = position + positionOffset
+        val now = SystemClock.uptimeMillis()
+        if (lastScroll >= 0 && now > lastScrollTime) {
+            val sample = abs(scroll - lastScroll) * 1000f / (now - lastScrollTime)
+            velocity += (sample - velocity) * VELOCITY_SMOOTHING
+        }
+        lastScroll = scroll
+        lastScrollTime = now
+
+        val d = (distance + (velocity * LOOKAHEAD_SECONDS).toInt()).coerceAtMost(distance * MAX_DISTANCE_FACTOR)
+        if (d > aheadDistance) {
+            aheadDistance = d
+            prefetch()
+        }
+    }
+
+    override fun onPageScrollStateChanged(state: Int) {
+        if (state == ViewPager.SCROLL_STATE_IDLE) {
+            velocity = 0f
+            lastScroll = -1f
+            aheadDistance = distance
+        }
+    }
+
+    override fun onPagesScrolled(currentPosition: Int, currentPages: IntArray?, previousPosition: Int, previousPages: IntArray?) {
+        moveTo(currentPosition, previousPosition)
+    }
+
+    override fun onPagesChanged(currentPosition: Int, currentPages: IntArray?, previousPosition: Int, previousPages: IntArray?) {
+        moveTo(currentPosition, previousPosition)
+    }
+
+    override fun onPageSelected(position: Int) {}
+    override fun onVisiblePageIndexesChanged(pages: IntArray?, added: IntArray?, removed: IntArray?) {}
+
+    private fun moveTo(currentPosition: Int, previousPosition: Int) {
+        if (currentPosition != previousPosition) {
+            direction = (currentPosition - previousPosition).sign
+        }
+        position = currentPosition
+        prefetch()
+    }
+
+    private fun prefetch() {
+        if (distance <= 0) return
+        val config = spreadConfiguration() ?: return
+
+        // The spreads within the offscreen limit are already loading their images
+        val first = viewPager.offscreenPageLimit + 1
+        val requests = ArrayList<PageRequest>()
+        for (i in first until first + aheadDistance) {
+            addRequests(config, position + direction * i, requests)
+        }
+        for (i in first until first + BEHIND_DISTANCE) {
+            addRequests(config, position - direction * i, requests)
+        }
+
+        // cancel the obsolete ones first, to free the slots for the new ones
+        for (i in prefetches.size() - 1 downTo 0) {
+            val page = prefetches.keyAt(i)
+            val prefetch = prefetches.valueAt(i)
+            if (requests.none { it.page == page && it.width == prefetch.width && it.height == prefetch.height }) {
+                requestManager.clear(prefetch.target)
+                prefetches.removeAt(i)
+            }
+        }
+        for (r in requests) {
+            if (prefetches.get(r.page) == null) {
+                val target = requestManager.loadPageImage(r.images, PageImageVariant.View, format, Point(r.width, r.height)).preload(r.width, r.height)
+                prefetches.put(r.page, Prefetch(target, r.width, r.height))
+            }
+        }
+    }
+
+    private fun addRequests(
+        config: SpreadConfiguration,
+        spreadPosition: Int,
+        out: MutableList<PageRequest>
+    ) {
+        if (spreadPosition < 0 || spreadPosition >= config.spreadCount) return
+        val property = config.getSpreadProperty(spreadPosition)
+        val pages = property.pages ?: return
+        if (pages.isEmpty()) return
+        for (p in pages) {
+            val page = config.getPublicationPage(p) ?: continue
+            val size = pageDecodeSize(viewPager.context, page.aspectRatio.toFloat())
+            out.add(PageRequest(page.index, page.images, size.x, size.y))
+        }
+    }
+
+    fun cancelAll() {
+        for (i in 0 until prefetches.size()) {
+            requestManager.clear(prefetches.valueAt(i).target)
+        }
+        prefetches.clear()
+    }
+}
@@ -0,0 +1,138 @@
+package com.tjek.sdk.publicationviewer.paged
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.graphics.Bitmap
+import android.graphics.drawable.Drawable
+import android.util.LruCache
+import android.view.ViewGroup
+import android.widget.ImageView
+import androidx.recyclerview.widget.RecyclerView
+import com.bumptech.glide.RequestManager
+import com.bumptech.glide.load.DecodeFormat
+import com.bumptech.glide.request.target.CustomTarget
+import com.bumptech.glide.request.transition.Transition
+import com.tjek.sdk.api.models.PublicationPageV2
+
+/**
+ * The thumbnails of the pages, shown in a strip to jump to any page.
+ *
+ * The thumb images are decoded at the size of the tile and copied in a small cache of their own, so scrubbing
+ * through the strip neither evicts the page images from Glide's memory cache nor decodes the same thumbnail twice.
+ */
+internal class PageThumbnailAdapter(
+    private val pages: List<PublicationPageV2>,
+    private val requestManager: RequestManager,
+    private val tileHeight: Int,
+    private val onPageClick: (page: Int) -> Unit
+) : RecyclerView.Adapter<PageThumbnailAdapter.ThumbnailHolder>() {
+
+    companion object {
+        private const val CACHE_BYTES = 4 * 1024 * 1024
+    }
+
+    private val cache = object : LruCache<Int, Bitmap>(CACHE_BYTES) {
+        override fun sizeOf(key: Int, value: Bitmap): Int = value.allocationByteCount
+    }
+
+    private var currentPages = IntArray(0)
+
+    init {
+        setHasStableIds(true)
+    }
+
+    inner class ThumbnailHolder(val imageView: ImageView) : RecyclerView.ViewHolder(imageView) {
+
+        var page = -1
+        var target: ThumbnailTarget? = null
+    }
+
+    inner class ThumbnailTarget(private val holder: ThumbnailHolder, private val page: Int, width: Int, height: Int) :
+        CustomTarget<Bitmap>(width, height) {
+
+        override fun onResourceReady(resource: Bitmap, transition: Transition<in Bitmap>?) {
+            // Glide reuses its bitmap when the request is cleared, the cache keeps a copy
+            val bitmap = resource.copy(Bitmap.Config.RGB_565, false) ?: return
+            cache.put(page, bitmap)
+            if (holder.page == page) holder.imageView.setImageBitmap(bitmap)
+        }
+
+        override fun onLoadCleared(placeholder: Drawable?) { }
+    }
+
+    override fun getItemCount(): Int = pages.size
+
+    override fun getItemId(position: Int): Long = pages[position].index.toLong()
+
+    override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): ThumbnailHolder {
+        val imageView = ImageView(parent.context).apply {
+            layoutParams = RecyclerView.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, tileHeight)
+            scaleType = ImageView.ScaleType.FIT_CENTER
+            adjustViewBounds = true
+        }
+        val holder = ThumbnailHolder(imageView)
+        imageView.setOnClickListener {
+            if (holder.page >= 0) onPageClick(holder.page)
+        }
+        return holder
+    }
+
+    override fun onBindViewHolder(holder: ThumbnailHolder, position: Int) {
+        val page = pages[position]
+        holder.target?.let { requestManager.clear(it) }
+        holder.target = null
+        holder.page = page.index
+        val aspectRatio = page.aspectRatio.toFloat()
+        val width = if (aspectRatio > 0f) (tileHeight * aspectRatio).toInt().coerceAtLeast(1) else tileHeight
+        holder.imageView.layoutParams.width = width
+        holder.imageView.contentDescription = "${page.index + 1}"
+        holder.imageView.isSelected = page.index in currentPages
+        holder.imageView.alpha = if (holder.imageView.isSelected) 1f else 0.6f
+
+        val cached = cache.get(page.index)
+        if (cached != null) {
+            holder.imageView.setImageBitmap(cached)
+            return
+        }
+        holder.imageView.setImageDrawable(null)
+        val url = page.images.thumb ?: page.images.view ?: return
+        holder.target = requestManager
+            .asBitmap()
+            .load(url)
+            .format(DecodeFormat.PREFER_RGB_565)
+            .skipMemoryCache(true)
+            .into(ThumbnailTarget(holder, page.index, width, tileHeight))
+    }
+
+    override fun onViewRecycled(holder: ThumbnailHolder) {
+        holder.target?.let { requestManager.clear(it) }
+        holder.target = null
+        holder.page = -1
+        holder.imageView.setImageDrawable(null)
+    }
+
+    fun setCurrentPages(current: IntArray) {
+        val previous = currentPages
+        currentPages = current.copyOf()
+        (previous + currentPages).distinct().filter { it in pages.indices }.forEach { notifyItemChanged(it) }
+    }
+
+    // The adapter position of the page, -1 if it isn't a publication page (e.g. the outro)
+    fun getPosition(page: Int): Int = if (page in pages.indices) page else -1
+
+    fun clearCache() {
+        cache.evictAll()
+    }
+}
@@ -0,0 +1,131 @@
+package com.tjek.sdk.publicationviewer.paged
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import android.util.SparseArray
+
+/**
+ * Decides when a page has really been viewed, so the page opened event is sent once per view
+ * instead of once per spread the pager settles on.
+ *
+ * A page is viewed when it has been on screen for at least [dwellThreshold] ms. Leaving a page and coming back
+ * within [COALESCE_WINDOW] ms (e.g. swiping back and forth) continues the same view: the time adds up and
+ * the page isn't reported again. After that window, coming back to the page is a new view.
+ *
+ * Main thread only.
+ */
+internal class PageViewTracker(
+    private val dwellThreshold: Long,
+    private val onPageViewed: (page: Int) -> Unit
+) {
+
+    companion object {
+        const val COALESCE_WINDOW = 10_000L
+    }
+
+    private class Visit {
+        // time on screen, not counting the current visit
+        var dwell = 0L
+        // -1 when the page isn't on screen
+        var visibleSince = -1L
+        var leftAt = 0L
+        var reported = false
+
+        fun dwell(now: Long): Long = if (visibleSince < 0) dwell else dwell + now - visibleSince
+    }
+
+    private val visits = SparseArray<Visit>()
+    private var visiblePages = IntArray(0)
+    private var paused = false
+    private val handler = Handler(Looper.getMainLooper())
+    private val checkRunnable = Runnable { check() }
+
+    /**
+     * @param pages the pages on screen now, the ones not in the array have been left
+     */
+    fun setVisiblePages(pages: IntArray) {
+        val previous = visiblePages
+        visiblePages = pages.copyOf()
+        if (paused) return
+        val now = SystemClock.uptimeMillis()
+        for (page in previous) {
+            if (page !in visiblePages) leave(page, now)
+        }
+        for (page in visiblePages) {
+            if (page !in previous) enter(page, now)
+        }
+        check()
+    }
+
+    // The viewer isn't on screen anymore, the visible pages are entered again by resume
+    fun pause() {
+        if (paused) return
+        paused = true
+        val now = SystemClock.uptimeMillis()
+        visiblePages.forEach { leave(it, now) }
+        handler.removeCallbacks(checkRunnable)
+    }
+
+    fun resume() {
+        if (!paused) return
+        paused = false
+        val now = SystemClock.uptimeMillis()
+        visiblePages.forEach { enter(it, now) }
+        check()
+    }
+
+    private fun enter(page: Int, now: Long) {
+        val visit = visits.get(page) ?: Visit().also { visits.put(page, it) }
+        if (visit.visibleSince >= 0) return
+        if (visit.leftAt > 0 && now - visit.leftAt > COALESCE_WINDOW) {
+            // it's a new view of the page
+            visit.dwell = 0
+            visit.reported = false
+        }
+        visit.visibleSince = now
+    }
+
+    private fun leave(page: Int, now: Long) {
+        val visit = visits.get(page) ?: return
+        if (visit.visibleSince < 0) return
+        visit.dwell += now - visit.visibleSince
+        visit.visibleSince = -1
+        visit.leftAt = now
+    }
+
+    // Report the pages over the threshold and wait for the next visible page to reach it
+    private fun check() {
+        handler.removeCallbacks(checkRunnable)
+        val now = SystemClock.uptimeMillis()
+        var next = Long.MAX_VALUE
+        for (page in visiblePages) {
+            val visit = visits.get(page) ?: continue
+            if (visit.reported || visit.visibleSince < 0) continue
+            val remaining = dwellThreshold - visit.dwell(now)
+            if (remaining <= 0) {
+                visit.reported = true
+                onPageViewed(page)
+            } else {
+                next = minOf(next, remaining)
+            }
+        }
+        if (next != Long.MAX_VALUE) {
+            handler.postDelayed(checkRunnable, next)
+        }
+    }
+}
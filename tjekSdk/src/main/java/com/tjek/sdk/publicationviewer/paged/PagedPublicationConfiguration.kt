@@ -37,6 +37,42 @@ data class PagedPublicationConfiguration(
     // Show a pulsating number as loading state when a page image is loaded
     val showPageNumberWhileLoading: Boolean = true,
 
+    // Number of spreads, after the ones kept by the pager, whose page images are preloaded in the direction of swipe.
+    // It grows with the swipe velocity. Set to 0 to disable the prefetch
+    val pagePrefetchDistance: Int = 2,
+
+    // When zooming, decode only the visible part of the zoom image instead of the whole image.
+    // Set to false to decode the full zoom image
+    val tiledZoom: Boolean = true,
+
+    // Bitmap format of the page images. RGB_565 uses half the memory of ARGB_8888 at the cost of some color banding.
+    // Hardware lets Glide use hardware bitmaps (Android 8+), that don't use the app heap
+    val pageImageFormat: PageImageFormat = PageImageFormat.Hardware,
+
+    // Max bytes used by the page images of all the spreads kept by the viewer, zoom tiles included.
+    // When exceeded, the images of the pages farthest from the current one are released. 0 means a quarter of the heap
+    val pageImageMemoryBudget: Long = 0,
+
+    // Show the spreads as views recycled by the pager, without a fragment per spread: the views of the spreads
+    // that leave the screen are reused for the next ones, instead of inflating new views on every swipe.
+    // The fragment of VersoTapInfo and VersoZoomPanInfo is then never added, use their spread for the views
+    val recycleSpreadViews: Boolean = false,
+
+    // Collect the frame times while swiping and zooming, and the time spent in populate, page image load
+    // and hotspot overlay draw. Read them with PagedPublicationFragment.getFrameTimingReport
+    val collectFrameTimings: Boolean = false,
+
+    // Milliseconds a page has to stay on screen to be counted as viewed (page opened event).
+    // Going back to a page within a few seconds continues the same view. Set to 0 to count a page as soon as it's shown
+    val pageViewDwellThreshold: Long = 1000,
+
+    // Show a strip with the thumbnails of the pages at the bottom of the viewer, to jump to any page
+    val showPageThumbnails: Boolean = false,
+
+    // Show the front page image of the publication given to newInstance while the pages are loaded,
+    // instead of the loader. Only when the publication is opened at the first page
+    val showCoverWhileLoading: Boolean = true,
+
     // Outro view
     val outroViewGenerator: OutroViewGenerator? = null
 ): Parcelable {
@@ -45,6 +81,10 @@ data class PagedPublicationConfiguration(
     val hasOutro = outroViewGenerator != null
 }
 
+enum class PageImageFormat {
+    Hardware, ARGB_8888, RGB_565
+}
+
 @Parcelize
 open class OutroViewGenerator(
     var publication: PublicationV2? = null // set by PagedPublicationFragment
@@ -14,6 +14,7 @@ package com.tjek.sdk.publicationviewer.paged
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+import android.graphics.Rect
 import android.os.Bundle
 import android.os.Handler
 import android.os.Looper
@@ -22,9 +23,13 @@ import android.view.MotionEvent
 import android.view.View
 import android.view.ViewGroup
 import android.widget.FrameLayout
+import android.widget.ImageView
 import androidx.fragment.app.viewModels
+import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
+import com.bumptech.glide.Glide
+import com.bumptech.glide.Priority
 import com.tjek.sdk.R
-import com.tjek.sdk.DeviceOrientation
 import com.tjek.sdk.api.Id
 import com.tjek.sdk.api.models.PublicationV2
 import com.tjek.sdk.api.models.BrandingV2
@@ -33,7 +38,6 @@ import com.tjek.sdk.eventstracker.TjekEventsTracker
 import com.tjek.sdk.eventstracker.pagedPublicationOpened
 import com.tjek.sdk.eventstracker.pagedPublicationPageOpened
 import com.tjek.sdk.getColorInt
-import com.tjek.sdk.getDeviceOrientation
 import com.tjek.sdk.publicationviewer.LoaderAndErrorScreenCallback
 import com.tjek.sdk.publicationviewer.PublicationLoadingState
 import com.tjek.sdk.publicationviewer.getDefaultErrorScreen
@@ -41,6 +45,8 @@ import com.tjek.sdk.publicationviewer.getDefaultLoadingScreen
 import com.tjek.sdk.publicationviewer.paged.layouts.PublicationSpreadLayout
 import com.tjek.sdk.publicationviewer.paged.libs.verso.*
 import com.tjek.sdk.publicationviewer.paged.libs.verso.viewpager.CenteredViewPager
+import com.tjek.sdk.publicationviewer.paged.views.loadPageImage
+import com.tjek.sdk.publicationviewer.paged.views.pageDecodeSize
 
 class PagedPublicationFragment :
     VersoFragment(),
@@ -57,7 +63,13 @@ class PagedPublicationFragment :
     private var frameVerso: FrameLayout? = null
     private var frameLoader: FrameLayout? = null
     private var frameError: FrameLayout? = null
+    private var cover: ImageView? = null
     private lateinit var viewPager: VersoViewPager
+    private var pageImagePrefetcher: PageImagePrefetcher? = null
+    private lateinit var pageImageMemoryManager: PageImageMemoryManager
+    private lateinit var pageViewTracker: PageViewTracker
+    private var thumbnails: RecyclerView? = null
+    private var thumbnailAdapter: PageThumbnailAdapter? = null
 
     private var loadCompleteListener: OnLoadComplete? = null
     private var hotspotTapListener: OnHotspotTapListener? = null
@@ -109,6 +121,14 @@ class PagedPublicationFragment :
         customScreenCallback = callback
     }
 
+    // The frame timings collected since the viewer was created or the last reset.
+    // Null unless PagedPublicationConfiguration.collectFrameTimings is true
+    fun getFrameTimingReport(): FrameTimingReport? = frameTimingRecorder?.report
+
+    fun resetFrameTimings() {
+        frameTimingRecorder?.reset()
+    }
+
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
         if (savedInstanceState != null) {
@@ -140,6 +160,20 @@ class PagedPublicationFragment :
                 }
             }
         }
+        PageImageModelLoader.register(requireContext())
+        pageImageMemoryManager = PageImageMemoryManager(config.pageImageFormat, config.pageImageMemoryBudget)
+        setRecycleSpreadViews(config.recycleSpreadViews)
+        pageViewTracker = PageViewTracker(config.pageViewDwellThreshold) { page ->
+            viewModel.publication.value?.id?.let {
+                TjekEventsTracker.track(pagedPublicationPageOpened(
+                    publicationId = it,
+                    pageNumber = page
+                ))
+            }
+        }
+        if (config.collectFrameTimings) {
+            frameTimingRecorder = FrameTimingRecorder()
+        }
         viewModel.loadingState.observe(this) { state ->
             when (state) {
                 is PublicationLoadingState.Failed -> showError(state.error)
@@ -171,16 +205,68 @@ class PagedPublicationFragment :
         frameVerso = frame.findViewById(R.id.verso) as FrameLayout?
         frameError = frame.findViewById(R.id.paged_error) as FrameLayout?
         frameLoader = frame.findViewById(R.id.paged_loader) as FrameLayout?
+        cover = frame.findViewById(R.id.paged_cover) as ImageView?
+        if (config.showPageThumbnails) {
+            thumbnails = (frame.findViewById(R.id.paged_thumbnails) as RecyclerView?)?.apply {
+                layoutManager = LinearLayoutManager(context, LinearLayoutManager.HORIZONTAL, false)
+                setHasFixedSize(true)
+                val spacing = resources.getDimensionPixelSize(R.dimen.tjek_pagedpub_thumbnail_spacing)
+                addItemDecoration(object : RecyclerView.ItemDecoration() {
+                    override fun getItemOffsets(outRect: Rect, view: View, parent: RecyclerView, state: RecyclerView.State) {
+                        outRect.set(spacing, 0, spacing, 0)
+                    }
+                })
+            }
+        }
         setVisible(verso = false, loader = false, error = false)
 
         setOnEventListener(this)
         setOnLoadCompleteListener(this)
         viewPager.addOnPageChangeListener(this)
         addOnPageChangeListener(this)
+        addOnPageChangeListener(pageImageMemoryManager)
+
+        if (config.pagePrefetchDistance > 0) {
+            pageImagePrefetcher = PageImagePrefetcher(
+                requestManager = Glide.with(this),
+                viewPager = viewPager,
+                spreadConfiguration = { versoSpreadConfiguration as? SpreadConfiguration },
+                distance = config.pagePrefetchDistance,
+                format = config.pageImageFormat
+            ).also {
+                viewPager.addOnPageChangeListener(it)
+                addOnPageChangeListener(it)
+            }
+        }
 
         return  frame
     }
 
+    override fun onDestroyView() {
+        pageImagePrefetcher?.let {
+            it.cancelAll()
+            viewPager.removeOnPageChangeListener(it)
+            removeOnPageChangeListener(it)
+        }
+        pageImagePrefetcher = null
+        removeOnPageChangeListener(pageImageMemoryManager)
+        thumbnailAdapter?.clearCache()
+        thumbnailAdapter = null
+        thumbnails = null
+        cover = null
+        super.onDestroyView()
+    }
+
+    override fun onResume() {
+        super.onResume()
+        pageViewTracker.resume()
+    }
+
+    override fun onPause() {
+        pageViewTracker.pause()
+        super.onPause()
+    }
+
     override fun onViewCreated(view: View, savedInstanceState: Bundle?) {
         if (!hasSentOpenEvent) {
             // look for the publication id in the arguments (the whole publication or just the id)
@@ -205,23 +291,21 @@ class PagedPublicationFragment :
 
     private fun setVersoSpreadConfiguration() {
         var pageCount = viewModel.publication.value?.pageCount ?: 0
-        var spreadCount = when (resources.configuration.getDeviceOrientation()) {
-            DeviceOrientation.Landscape -> (pageCount / 2) + 1
-            else -> pageCount
-        }
         if (config.hasOutro) {
             pageCount++
-            spreadCount++
         }
+        // The spread count follows the orientation in SpreadConfiguration
         versoSpreadConfiguration = SpreadConfiguration(
             pageCount,
-            spreadCount,
             spreadMargin = 0,
             outroViewGenerator = config.outroViewGenerator?.also { it.publication = viewModel.publication.value },
             pages = viewModel.pages.value,
             publicationBrandingColor = viewModel.publication.value?.branding?.colorHex.getColorInt(),
             deviceConfiguration = resources.configuration,
-            showPageNumberWhileLoading = config.showPageNumberWhileLoading
+            showPageNumberWhileLoading = config.showPageNumberWhileLoading,
+            tiledZoom = config.tiledZoom,
+            memoryManager = pageImageMemoryManager,
+            frameTimings = frameTimingRecorder
         )
     }
 
@@ -233,7 +317,39 @@ class PagedPublicationFragment :
         }
     }
 
+    private fun showThumbnails() {
+        val list = thumbnails ?: return
+        val pages = viewModel.pages.value ?: return
+        if (thumbnailAdapter != null) return
+        thumbnailAdapter = PageThumbnailAdapter(
+            pages = pages,
+            requestManager = Glide.with(this),
+            tileHeight = resources.getDimensionPixelSize(R.dimen.tjek_pagedpub_thumbnail_height),
+            onPageClick = { jumpToPage(it) }
+        ).also {
+            it.setCurrentPages(currentPages)
+            list.adapter = it
+        }
+    }
+
+    // Jump to any page without going through the spreads in between
+    private fun jumpToPage(page: Int) {
+        val spreadConfiguration = versoSpreadConfiguration as? SpreadConfiguration ?: return
+        // Request the view images of the target spread before the pager creates it, ahead of the other requests
+        val requestManager = Glide.with(this)
+        val spreadPages = spreadConfiguration.getPagesFromSpreadPosition(spreadConfiguration.getSpreadPositionFromPage(page))
+        for (p in spreadPages) {
+            val publicationPage = spreadConfiguration.getPublicationPage(p) ?: continue
+            val size = pageDecodeSize(requireContext(), publicationPage.aspectRatio.toFloat())
+            requestManager.loadPageImage(publicationPage.images, PageImageVariant.View, pageImageMemoryManager.format, size)
+                .priority(Priority.IMMEDIATE)
+                .preload(size.x, size.y)
+        }
+        setPage(page)
+    }
+
     private fun showVersoView() {
+        showThumbnails()
         frameVerso?.let {
             if (it.visibility != View.VISIBLE) {
                 it.removeAllViews()
@@ -245,6 +361,7 @@ class PagedPublicationFragment :
     }
 
     private fun showLoader() {
+        if (showCover()) return
         val view =
             customScreenCallback?.showLoaderScreen(viewModel.publication.value?.branding) ?:
             getDefaultLoadingScreen(layoutInflater = layoutInflater,
@@ -263,12 +380,43 @@ class PagedPublicationFragment :
         frameError?.removeAllViews()
         frameError?.addView(view)
         setVisible(verso = false, loader = false, error = true)
+        hideCover()
+    }
+
+    // Show the front page image in place of the first page while the pages are loaded.
+    // It's usually in Glide's cache already (e.g. from the list of publications of the host app), and the request
+    // is the one PageView makes for the first page when its images are the front page ones, so the page is a memory hit
+    private fun showCover(): Boolean {
+        val view = cover ?: return false
+        if (!config.showCoverWhileLoading || config.initialPageNumber != 0) return false
+        val publication: PublicationV2 = arguments?.getParcelable(arg_publication) ?: return false
+        val images = publication.frontPageImages
+        if (images.view.isNullOrBlank() && images.zoom.isNullOrBlank()) return false
+        if (view.visibility != View.VISIBLE) {
+            val size = pageDecodeSize(requireContext(), publication.aspectRatio.toFloat())
+            val requestManager = Glide.with(this)
+            var request = requestManager.loadPageImage(images, PageImageVariant.View, pageImageMemoryManager.format, size).priority(Priority.IMMEDIATE)
+            if (!images.thumb.isNullOrBlank()) request = request.thumbnail(requestManager.load(images.thumb))
+            request.into(view)
+            view.visibility = View.VISIBLE
+        }
+        setVisible(verso = false, loader = false, error = false)
+        return true
+    }
+
+    // Called when the first page is shown (or failed to load), the cover is then behind it
+    private fun hideCover() {
+        val view = cover ?: return
+        if (view.visibility != View.VISIBLE) return
+        view.visibility = View.GONE
+        Glide.with(this).clear(view)
     }
 
     private fun setVisible(verso: Boolean, loader: Boolean, error: Boolean) {
         frameVerso?.visibility = if (verso) View.VISIBLE else View.GONE
         frameLoader?.visibility = if (loader) View.VISIBLE else View.GONE
         frameError?.visibility = if (error) View.VISIBLE else View.GONE
+        thumbnails?.visibility = if (verso && thumbnailAdapter != null) View.VISIBLE else View.GONE
     }
 
     override fun onVersoPageViewEvent(event: VersoPageViewEvent): Boolean {
@@ -277,7 +425,7 @@ class PagedPublicationFragment :
             is VersoPageViewEvent.LongTap -> showHotspotAndNotifyListener(event.info, longPress = true)
             is VersoPageViewEvent.Touch -> {
                 if (event.action == MotionEvent.ACTION_UP) {
-                    event.info.fragment.spreadOverlay?.let { view ->
+                    event.info.spread.spreadOverlay?.let { view ->
                         if (view is PublicationSpreadLayout) {
                             // the longTap event keep showing the hotspot until the finger goes up, so let's remove all views if any
                             view.removeHotspots()
@@ -292,6 +440,8 @@ class PagedPublicationFragment :
 
     // coming from the underlying Verso fragment
     override fun onPageLoadComplete(success: Boolean, versoPageView: VersoPageView?) {
+        // The cover stands in for the first page only, the neighbour pages can finish loading before it
+        if (versoPageView?.page == 0 || (versoPageView == null && !success)) hideCover()
         if (!success) return
         loadCompleteListener?.let { l ->
             versoPageView?.let { l.onPageLoad(it.page) }
@@ -317,9 +467,9 @@ class PagedPublicationFragment :
         // Show hotspot
         if (!config.displayHotspotsOnTouch) return false
         if (hs.isNotEmpty()) {
-            info.fragment.spreadOverlay?.let { view ->
+            info.spread.spreadOverlay?.let { view ->
                 if (view is PublicationSpreadLayout) {
-                    view.showHotspots(hs, longPress)
+                    view.showHotspots(hs, longPress, viewModel.hotspotTable)
                 }
             }
         }
@@ -348,17 +498,14 @@ class PagedPublicationFragment :
     // This callback is not triggered if the swipe is fast, so it's better for tracking the page open event
     // so we won't record the pages swiped away immediately but only the one
     override fun onPagesChanged(currentPosition: Int, currentPages: IntArray?, previousPosition: Int, previousPages: IntArray?) {
-        currentPages?.forEach { p ->
-            val page = p + 1 // it starts from 0
-            val lastPage = if (config.hasOutro) versoSpreadConfiguration.pageCount - 1 else versoSpreadConfiguration.pageCount
-            if (page <= lastPage) {
-                viewModel.publication.value?.id?.let {
-                    TjekEventsTracker.track(pagedPublicationPageOpened(
-                        publicationId = it,
-                        pageNumber = page
-                    ))
-                }
-            }
+        val lastPage = if (config.hasOutro) versoSpreadConfiguration.pageCount - 1 else versoSpreadConfiguration.pageCount
+        // it starts from 0
+        val pages = currentPages?.map { it + 1 }?.filter { it <= lastPage }?.toIntArray() ?: IntArray(0)
+        pageViewTracker.setVisiblePages(pages)
+        thumbnailAdapter?.let { adapter ->
+            currentPages?.let { adapter.setCurrentPages(it) }
+            val position = currentPages?.firstOrNull()?.let { adapter.getPosition(it) } ?: -1
+            if (position >= 0) thumbnails?.scrollToPosition(position)
         }
     }
 
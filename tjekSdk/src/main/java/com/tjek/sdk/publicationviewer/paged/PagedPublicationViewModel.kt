@@ -24,8 +24,11 @@ import com.tjek.sdk.api.models.PublicationHotspotV2
 import com.tjek.sdk.api.models.PublicationPageV2
 import com.tjek.sdk.api.models.PublicationV2
 import com.tjek.sdk.api.remote.ResponseType
+import com.tjek.sdk.publicationviewer.PagedPublicationSession
 import com.tjek.sdk.publicationviewer.PublicationLoadingState
+import com.tjek.sdk.publicationviewer.PublicationSessionCache
 import com.tjek.sdk.publicationviewer.paged.libs.verso.VersoTapInfo
+import com.tjek.sdk.publicationviewer.paged.offline.OfflinePublicationStore
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.async
 import kotlinx.coroutines.launch
@@ -45,28 +48,73 @@ class PagedPublicationViewModel : ViewModel() {
     val hotspots: LiveData<List<PublicationHotspotV2>>
         get() = _hotspots
 
+    // Built off the main thread every time the hotspots are loaded
+    @Volatile internal var hotspotTable: HotspotTable? = null
+        private set
+
     private val _loadingState = MutableLiveData<PublicationLoadingState>()
     val loadingState: LiveData<PublicationLoadingState>
         get() = _loadingState
 
+    // The publication loaded (or being loaded). The fragment asks for it again when it's recreated (e.g. rotation),
+    // then the data and the hotspot table are kept instead of being fetched and built again
+    private var requestedPublicationId: Id? = null
+
     fun loadPublication(publication: PublicationV2) {
-        _publication.postValue(publication)
-        _loadingState.postValue(PublicationLoadingState.Loading)
-        fetchPagesAndHotspots(publication)
+        if (isRequested(publication.id)) return
+        if (loadSession(publication.id)) return
+        load(publication)
     }
 
     fun loadPublication(publicationId: Id) {
+        if (isRequested(publicationId)) return
+        if (loadSession(publicationId)) return
         _loadingState.postValue(PublicationLoadingState.Loading)
         viewModelScope.launch(Dispatchers.IO) {
+            if (loadOfflinePublication(publicationId)) return@launch
             when(val res = TjekAPI.getPublication(publicationId)) {
                 is ResponseType.Error -> _loadingState.postValue(PublicationLoadingState.Failed(res))
-                is ResponseType.Success -> loadPublication(res.data)
+                is ResponseType.Success -> load(res.data)
             }
         }
     }
 
+    private fun isRequested(publicationId: Id): Boolean {
+        if (publicationId == requestedPublicationId && _loadingState.value !is PublicationLoadingState.Failed) return true
+        requestedPublicationId = publicationId
+        return false
+    }
+
+    private fun load(publication: PublicationV2) {
+        _publication.postValue(publication)
+        _loadingState.postValue(PublicationLoadingState.Loading)
+        fetchPagesAndHotspots(publication)
+    }
+
+    // A publication opened a moment ago (by any viewer) is shown without being fetched again
+    private fun loadSession(publicationId: Id): Boolean {
+        val session = PublicationSessionCache.getPaged(publicationId) ?: return false
+        _publication.postValue(session.publication)
+        _pages.postValue(session.pages)
+        hotspotTable = session.hotspotTable
+        _hotspots.postValue(session.hotspots)
+        _loadingState.postValue(PublicationLoadingState.Successful)
+        return true
+    }
+
+    // If the publication has been downloaded with OfflinePublications, everything is read from the store
+    private fun loadOfflinePublication(publicationId: Id): Boolean {
+        val offline = OfflinePublicationStore.load(publicationId) ?: return false
+        _publication.postValue(offline.publication)
+        _pages.postValue(offline.pages)
+        postHotspots(offline.hotspots)
+        _loadingState.postValue(PublicationLoadingState.Successful)
+        return true
+    }
+
     private fun fetchPagesAndHotspots(publication: PublicationV2) {
         viewModelScope.launch(Dispatchers.IO) {
+            if (loadOfflinePublication(publication.id)) return@launch
             supervisorScope {
                 val pagesCall = async { TjekAPI.getPublicationPages(publication.id, publication.aspectRatio) }
                 val hotspotsCall = async { TjekAPI.getPublicationHotspots(publication.id, publication.width, publication.height) }
@@ -75,12 +123,8 @@ class PagedPublicationViewModel : ViewModel() {
                 } catch (e: Exception) {
                     ResponseType.Error(message = e.message)
                 }
-                val hotspotsData = try {
-                    hotspotsCall.await()
-                } catch (e: Exception) {
-                    ResponseType.Error(message = e.message)
-                }
 
+                // The pages are shown as soon as they arrive, the hotspots follow
                 when (pagesData) {
                     is ResponseType.Error -> _loadingState.postValue(PublicationLoadingState.Failed(pagesData))
                     is ResponseType.Success -> {
@@ -89,30 +133,40 @@ class PagedPublicationViewModel : ViewModel() {
                             _loadingState.postValue(PublicationLoadingState.Failed(ResponseType.Error(message = "No pages found")))
                         } else {
                             _pages.postValue(pagesData.data)
-                            if (hotspotsData is ResponseType.Success) {
-                                _hotspots.postValue(hotspotsData.data)
-                            }
                             _loadingState.postValue(PublicationLoadingState.Successful)
                         }
                     }
                 }
 
+                val hotspotsData = try {
+                    hotspotsCall.await()
+                } catch (e: Exception) {
+                    ResponseType.Error(message = e.message)
+                }
+                if (pagesData is ResponseType.Success && hotspotsData is ResponseType.Success) {
+                    val table = postHotspots(hotspotsData.data)
+                    if (pagesData.data.isNotEmpty()) {
+                        PublicationSessionCache.put(PagedPublicationSession(publication, pagesData.data, hotspotsData.data, table))
+                    }
+                }
+
             }
         }
     }
 
+    private fun postHotspots(hotspots: List<PublicationHotspotV2>): HotspotTable {
+        val table = HotspotTable(hotspots)
+        hotspotTable = table
+        _hotspots.postValue(hotspots)
+        return table
+    }
+
     fun findHotspot(tap: VersoTapInfo): List<PublicationHotspotV2> {
-        val hotspots = _hotspots.value
-        if (hotspots?.isNotEmpty() == true && tap.isContentClicked()) {
-            val list = mutableListOf<PublicationHotspotV2>()
+        val table = hotspotTable
+        if (table != null && tap.isContentClicked()) {
             val length = tap.pages.size.toFloat()
             val xOnClickedPage = (tap.getPercentX() % (1f / length)) * length
-            for (h in hotspots) {
-                if (h.hasLocationAt(tap.pages, tap.pageTapped, xOnClickedPage, tap.getPercentY())) {
-                    list.add(h)
-                }
-            }
-            return list
+            return table.findHotspots(tap.pages, tap.pageTapped, xOnClickedPage, tap.getPercentY())
         }
         return emptyList()
     }
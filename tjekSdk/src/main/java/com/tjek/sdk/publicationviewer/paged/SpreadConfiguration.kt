@@ -22,6 +22,7 @@ import com.tjek.sdk.DeviceOrientation
 import com.tjek.sdk.api.models.PublicationPageV2
 import com.tjek.sdk.getDeviceOrientation
 import com.tjek.sdk.getPrimaryText
+import com.tjek.sdk.publicationviewer.paged.libs.verso.FrameTimingRecorder
 import com.tjek.sdk.publicationviewer.paged.libs.verso.VersoSpreadConfiguration
 import com.tjek.sdk.publicationviewer.paged.libs.verso.VersoSpreadProperty
 import com.tjek.sdk.publicationviewer.paged.layouts.PublicationSpreadLayout
@@ -30,18 +31,39 @@ import com.tjek.sdk.publicationviewer.paged.views.PageView
 // Automatically constructed from publication parameters (like page number) and from settings in PagedPublicationConfiguration
 internal class SpreadConfiguration(
     override val pageCount: Int,
-    override val spreadCount: Int,
     override val spreadMargin: Int,
     private val pages: List<PublicationPageV2>?,
     private val showPageNumberWhileLoading: Boolean,
+    private val tiledZoom: Boolean,
+    private val memoryManager: PageImageMemoryManager?,
+    private val frameTimings: FrameTimingRecorder?,
     private val publicationBrandingColor: ColorInt,
     private val outroViewGenerator: OutroViewGenerator?,
     deviceConfiguration: Configuration
 ) : VersoSpreadConfiguration {
 
+    companion object {
+        // Two spreads of two pages
+        private const val MAX_POOLED_PAGE_VIEWS = 4
+    }
+
     private var orientation = deviceConfiguration.getDeviceOrientation()
     private val hasOutro = outroViewGenerator != null
 
+    // Follows the orientation, so a rotation only changes the spreads: the pages, their views and images are kept
+    override val spreadCount: Int
+        get() {
+            val publicationPageCount = if (hasOutro) pageCount - 1 else pageCount
+            val spreads = when (orientation) {
+                DeviceOrientation.Landscape -> (publicationPageCount / 2) + 1
+                else -> publicationPageCount
+            }
+            return if (hasOutro) spreads + 1 else spreads
+        }
+
+    // Page views of the recycled spreads
+    private val pageViewPool = ArrayList<PageView>(MAX_POOLED_PAGE_VIEWS)
+
     override fun getPageView(container: ViewGroup, page: Int): View? {
         return if (hasOutro && page == pageCount - 1) outroViewGenerator?.getOutroView(container.context, page)
             else getPublicationPageView(container, page)
@@ -49,7 +71,28 @@ internal class SpreadConfiguration(
 
     private fun getPublicationPageView(container: ViewGroup, publicationPage: Int): View {
         val page = publicationPage.coerceIn(0, (pages?.size?.minus(1))?.coerceAtLeast(0))
-        return PageView(container.context, pages?.get(page), showPageNumberWhileLoading, publicationBrandingColor.getPrimaryText())
+        val publicationPageV2 = pages?.get(page)
+        if (pageViewPool.isNotEmpty()) {
+            return pageViewPool.removeAt(pageViewPool.size - 1).also { it.bind(publicationPageV2) }
+        }
+        return PageView(container.context, publicationPageV2, showPageNumberWhileLoading, publicationBrandingColor.getPrimaryText(), tiledZoom)
+            .also {
+                it.memoryManager = memoryManager
+                it.frameTimings = frameTimings
+            }
+    }
+
+    override fun recyclePageView(view: View) {
+        // the outro view is generated by the app, it's never reused
+        if (view is PageView && view.parent == null && pageViewPool.size < MAX_POOLED_PAGE_VIEWS) {
+            pageViewPool.add(view)
+        }
+    }
+
+    // The publication page shown at this page index, null for the outro
+    fun getPublicationPage(page: Int): PublicationPageV2? {
+        if (hasOutro && page == pageCount - 1) return null
+        return pages?.getOrNull(page)
     }
 
     override fun getSpreadOverlay(
@@ -58,7 +101,7 @@ internal class SpreadConfiguration(
     ): View? {
         val position = getSpreadPositionFromPage(pages[0])
         return if (hasOutro && position == spreadCount - 1) null
-            else PublicationSpreadLayout(container.context, pages)
+            else PublicationSpreadLayout(container.context, pages).also { it.frameTimings = frameTimings }
     }
 
     override fun onConfigurationChanged(newConfig: Configuration) {
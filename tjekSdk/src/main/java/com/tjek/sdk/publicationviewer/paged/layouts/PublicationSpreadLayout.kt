@@ -15,11 +15,15 @@ package com.tjek.sdk.publicationviewer.paged.layouts
  * limitations under the License.
  */
 import android.content.Context
+import android.graphics.Canvas
+import android.graphics.RectF
 import android.view.View
 import android.view.ViewTreeObserver
 import android.widget.FrameLayout
 import com.tjek.sdk.R
 import com.tjek.sdk.api.models.PublicationHotspotV2
+import com.tjek.sdk.publicationviewer.paged.HotspotTable
+import com.tjek.sdk.publicationviewer.paged.libs.verso.FrameTimingRecorder
 import com.tjek.sdk.publicationviewer.paged.views.*
 
 // This overlay will add the hotspot views and a dimmed overlay that will mask the rest of the page,
@@ -29,6 +33,17 @@ class PublicationSpreadLayout(
     val pages: IntArray
 ) : FrameLayout(context) {
 
+    // The views (with their animations) are recycled, so repeated taps don't inflate anything
+    private val hotspotViews = ArrayList<HotspotView>()
+    private val longPressHotspotViews = ArrayList<HotspotView>()
+    private val longPressHighlightViews = ArrayList<HotspotLongPressView>()
+    private var overlay: HotspotOverlay? = null
+    private var longPressOverlay: HotspotOverlay? = null
+    private val boundsRect = RectF()
+
+    // Set by SpreadConfiguration when the frame timings are collected
+    internal var frameTimings: FrameTimingRecorder? = null
+
     override fun onMeasure(widthMeasureSpec: Int, heightMeasureSpec: Int) {
         val width = MeasureSpec.getSize(widthMeasureSpec)
         val height = MeasureSpec.getSize(heightMeasureSpec)
@@ -38,15 +53,32 @@ class PublicationSpreadLayout(
         setMeasuredDimension(width, height)
     }
 
+    override fun dispatchDraw(canvas: Canvas?) {
+        val timings = frameTimings
+        if (timings == null || childCount == 0) {
+            super.dispatchDraw(canvas)
+            return
+        }
+        val start = timings.beginPhase()
+        super.dispatchDraw(canvas)
+        timings.endPhase(FrameTimingRecorder.PHASE_HOTSPOT_OVERLAY_DRAW, start)
+    }
+
     fun showHotspots(list: List<PublicationHotspotV2>, longPress: Boolean) {
+        showHotspots(list, longPress, null)
+    }
+
+    // The bounds are read from the table, if given, instead of being computed from the polygons
+    internal fun showHotspots(list: List<PublicationHotspotV2>, longPress: Boolean, table: HotspotTable?) {
         if (list.isEmpty()) return
         val hsViews = mutableListOf<View>()
         for (h in list) {
-            val view = HotspotView(context, h, pages, longPress)
+            val view = obtain(if (longPress) longPressHotspotViews else hotspotViews) { HotspotView(context, null, longPress) }
+            view.setBounds(getBounds(h, table))
             addView(view)
             hsViews.add(view)
         }
-        val overlay = HotspotOverlay(context, longPress)
+        val overlay = getOverlay(longPress)
         addView(overlay)
         viewTreeObserver.addOnPreDrawListener(object : ViewTreeObserver.OnPreDrawListener {
             override fun onPreDraw(): Boolean {
@@ -61,17 +93,46 @@ class PublicationSpreadLayout(
 
         if (longPress) {
             for (h in list) {
-                val view = HotspotLongPressView(context, h, pages)
+                val view = obtain(longPressHighlightViews) { HotspotLongPressView(context, null) }
+                view.setBounds(getBounds(h, table))
                 addView(view)
                 hsViews.add(view)
             }
         }
 
-        hsViews.forEach { it.animation.startNow() }
-        overlay.animation.startNow()
+        hsViews.forEach { (it as HotspotView).startInAnimation() }
+        overlay.startInAnimation()
+    }
+
+    private fun getBounds(hotspot: PublicationHotspotV2, table: HotspotTable?): RectF? {
+        return if (table?.getBoundsForPages(hotspot, pages, boundsRect) == true) boundsRect
+            else hotspot.getBoundsForPages(pages)
+    }
+
+    private fun <T : View> obtain(pool: ArrayList<T>, create: () -> T): T {
+        return if (pool.isEmpty()) create() else pool.removeAt(pool.size - 1)
+    }
+
+    private fun getOverlay(longPress: Boolean): HotspotOverlay {
+        return if (longPress) {
+            longPressOverlay ?: HotspotOverlay(context, true).also { longPressOverlay = it }
+        } else {
+            overlay ?: HotspotOverlay(context, false).also { overlay = it }
+        }
     }
 
     fun removeHotspots() {
+        for (i in 0 until childCount) {
+            val view = getChildAt(i)
+            // a view removed while animating would be kept as a disappearing child, so it couldn't be added again
+            view.clearAnimation()
+            when (view) {
+                is HotspotLongPressView -> longPressHighlightViews.add(view)
+                is HotspotView -> if (view.isLongPress) longPressHotspotViews.add(view) else hotspotViews.add(view)
+                // the hardware layer is removed at the end of the animation, that won't come now
+                is HotspotOverlay -> view.setLayerType(LAYER_TYPE_NONE, null)
+            }
+        }
         removeAllViews()
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,161 @@
+package com.tjek.sdk.publicationviewer.paged.libs.verso;
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import java.util.Arrays;
+
+/**
+ * Collects the frame times of the {@link VersoViewPager} while the user swipes, flings or zooms,
+ * together with the time spent in the phases that can make a frame late.
+ *
+ * <p>The frame times are the intervals between the {@link Choreographer} frames during an interaction,
+ * so an interval longer than the refresh interval is a dropped frame. The phases are measured where
+ * they run: the pager populate, the page image load (from the request to the image being ready, so
+ * download and disk read included, not only the decode) and the draw of the hotspot overlay.</p>
+ *
+ * <p>Only the last {@link #CAPACITY} samples of each series are kept, in preallocated arrays,
+ * so recording doesn't allocate. Main thread only.</p>
+ */
+public class FrameTimingRecorder {
+
+    public static final String TAG = FrameTimingRecorder.class.getSimpleName();
+
+    public static final int PHASE_POPULATE = 0;
+    public static final int PHASE_PAGE_IMAGE_LOAD = 1;
+    public static final int PHASE_HOTSPOT_OVERLAY_DRAW = 2;
+    private static final int FRAME = 3;
+
+    public static final int INTERACTION_SWIPE = 1;
+    public static final int INTERACTION_ZOOM = 1 << 1;
+
+    private static final int CAPACITY = 1024;
+    // A frame is janky when it takes more than this many refresh intervals
+    private static final float JANK_FACTOR = 1.5f;
+
+    // Samples in microseconds, per series
+    private final int[][] mSamples = new int[4][CAPACITY];
+    private final int[] mCount = new int[4];
+
+    private long mRefreshIntervalNanos = 1_000_000_000L / 60;
+    private int mJankyFrames = 0;
+    private int mInteractions = 0;
+    private long mLastFrameNanos = 0;
+    private boolean mFrameCallbackPosted = false;
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mFrameCallbackPosted = false;
+            if (mLastFrameNanos > 0) {
+                long interval = frameTimeNanos - mLastFrameNanos;
+                record(FRAME, interval / 1000);
+                if (interval > mRefreshIntervalNanos * JANK_FACTOR) {
+                    mJankyFrames++;
+                }
+            }
+            if (mInteractions != 0) {
+                mLastFrameNanos = frameTimeNanos;
+                postFrameCallback();
+            } else {
+                mLastFrameNanos = 0;
+            }
+        }
+    };
+
+    public void setRefreshRate(float refreshRate) {
+        if (refreshRate > 0) {
+            mRefreshIntervalNanos = (long) (1_000_000_000L / refreshRate);
+        }
+    }
+
+    /**
+     * @param interaction {@link #INTERACTION_SWIPE} or {@link #INTERACTION_ZOOM}
+     * @param active true when the interaction starts, false when it ends
+     */
+    public void setInteraction(int interaction, boolean active) {
+        if (active) {
+            mInteractions |= interaction;
+            postFrameCallback();
+        } else {
+            mInteractions &= ~interaction;
+        }
+    }
+
+    private void postFrameCallback() {
+        if (!mFrameCallbackPosted) {
+            mFrameCallbackPosted = true;
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    }
+
+    /**
+     * @return the start time of a phase, to give to {@link #endPhase(int, long)}
+     */
+    public long beginPhase() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    public void endPhase(int phase, long startNanos) {
+        record(phase, (SystemClock.elapsedRealtimeNanos() - startNanos) / 1000);
+    }
+
+    public void recordPhase(int phase, long millis) {
+        record(phase, millis * 1000);
+    }
+
+    private void record(int series, long micros) {
+        int i = mCount[series]++ % CAPACITY;
+        mSamples[series][i] = (int) Math.min(micros, Integer.MAX_VALUE);
+    }
+
+    public void reset() {
+        Arrays.fill(mCount, 0);
+        mJankyFrames = 0;
+    }
+
+    public FrameTimingReport getReport() {
+        return new FrameTimingReport(
+                mCount[FRAME],
+                mJankyFrames,
+                getTimings(FRAME),
+                getTimings(PHASE_POPULATE),
+                getTimings(PHASE_PAGE_IMAGE_LOAD),
+                getTimings(PHASE_HOTSPOT_OVERLAY_DRAW));
+    }
+
+    private FrameTimingReport.Timings getTimings(int series) {
+        int count = Math.min(mCount[series], CAPACITY);
+        if (count == 0) {
+            return new FrameTimingReport.Timings(0, 0, 0, 0, 0);
+        }
+        int[] sorted = Arrays.copyOf(mSamples[series], count);
+        Arrays.sort(sorted);
+        return new FrameTimingReport.Timings(
+                mCount[series],
+                percentile(sorted, 50),
+                percentile(sorted, 90),
+                percentile(sorted, 99),
+                sorted[count - 1] / 1000f);
+    }
+
+    // Nearest rank, in milliseconds
+    private static float percentile(int[] sorted, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1000f;
+    }
+}
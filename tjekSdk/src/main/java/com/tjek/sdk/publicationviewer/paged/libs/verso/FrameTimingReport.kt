@@ -0,0 +1,42 @@
+package com.tjek.sdk.publicationviewer.paged.libs.verso
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Frame times of the paged viewer during swipes, flings and zooms, and the time spent in the phases
+ * that can delay a frame. The percentiles are computed on the last 1024 samples of each series.
+ */
+data class FrameTimingReport(
+    // Frames drawn while the user was interacting with the viewer
+    val frames: Int,
+    // Frames that took more than 1.5 refresh intervals
+    val jankyFrames: Int,
+    val frameTimes: Timings,
+    val populate: Timings,
+    // From the image request to the decoded image being ready: download, disk read and decode
+    val pageImageLoad: Timings,
+    val hotspotOverlayDraw: Timings
+) {
+
+    // All the times are in milliseconds
+    data class Timings(
+        val count: Int,
+        val p50: Float,
+        val p90: Float,
+        val p99: Float,
+        val max: Float
+    )
+}
@@ -3,6 +3,7 @@ package com.tjek.sdk.publicationviewer.paged.libs.verso
 import android.content.res.Configuration
 import android.view.View
 import android.view.ViewGroup
+import com.tjek.sdk.publicationviewer.paged.libs.zoomlayout.ZoomLayout
 
 sealed interface VersoPageViewListener {
 
@@ -21,6 +22,9 @@ interface VersoPageView {
     fun setOnLoadCompleteListener(listener: VersoPageViewListener.OnLoadCompleteListener)
     fun onVisible()
     fun onInvisible()
+
+    // Called after the spread has been zoomed or panned
+    fun onViewportChanged(zoomLayout: ZoomLayout) {}
 }
 
 interface VersoSpreadConfiguration {
@@ -30,6 +34,12 @@ interface VersoSpreadConfiguration {
      * @return a View
      */
     fun getPageView(container: ViewGroup, page: Int): View?
+
+    /**
+     * Called with the page views removed from a spread, when the spread views are recycled.
+     * The view can be returned again by [getPageView] for another page.
+     */
+    fun recyclePageView(view: View) {}
     fun getSpreadOverlay(container: ViewGroup, pages: IntArray): View?
     fun onConfigurationChanged(newConfig: Configuration)
     val pageCount: Int
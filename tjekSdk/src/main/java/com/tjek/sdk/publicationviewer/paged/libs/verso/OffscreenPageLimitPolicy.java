@@ -0,0 +1,97 @@
+package com.tjek.sdk.publicationviewer.paged.libs.verso;
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.app.ActivityManager;
+import android.content.Context;
+
+import com.tjek.sdk.TjekLogCat;
+
+import java.util.Locale;
+
+/**
+ * Chooses how many spreads the {@link VersoViewPager} keeps on each side of the current one.
+ *
+ * <p>The memory class of the device gives the maximum: every spread holds a fragment, a zoom layout
+ * and the page bitmaps. Within that, the limit follows the measured time a spread takes to show its pages:
+ * the slower the pages load, the earlier a spread has to be created to be ready when the user swipes to it.</p>
+ */
+public class OffscreenPageLimitPolicy {
+
+    public static final String TAG = OffscreenPageLimitPolicy.class.getSimpleName();
+
+    public interface OnLimitChangedListener {
+        void onOffscreenPageLimitChanged(int limit);
+    }
+
+    // Used until a page load has been measured
+    private static final int DEFAULT_LIMIT = 2;
+    // Roughly the time a user spends on a spread while swiping through a publication
+    private static final long SWIPE_INTERVAL_MS = 600;
+    // Weight of the newest sample in the load time moving average
+    private static final float LOAD_TIME_SMOOTHING = 0.25f;
+
+    private final int mMaxLimit;
+    private final OnLimitChangedListener mListener;
+    private float mAverageLoadTime = -1;
+    private int mLimit;
+
+    public OffscreenPageLimitPolicy(Context context, OnLimitChangedListener listener) {
+        mMaxLimit = getMaxLimit(context);
+        mListener = listener;
+        mLimit = Math.min(DEFAULT_LIMIT, mMaxLimit);
+    }
+
+    private static int getMaxLimit(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (am == null) {
+            return DEFAULT_LIMIT;
+        }
+        int memoryClass = am.getMemoryClass();
+        if (am.isLowRamDevice() || memoryClass <= 96) {
+            return 1;
+        } else if (memoryClass <= 192) {
+            return 2;
+        }
+        return 3;
+    }
+
+    public int getLimit() {
+        return mLimit;
+    }
+
+    /**
+     * @param millis the time from the creation of a spread to the page being shown
+     */
+    public void onPageLoaded(long millis) {
+        if (millis < 0) {
+            return;
+        }
+        if (mAverageLoadTime < 0) {
+            mAverageLoadTime = millis;
+        } else {
+            mAverageLoadTime += (millis - mAverageLoadTime) * LOAD_TIME_SMOOTHING;
+        }
+        int limit = 1 + (int) Math.ceil(mAverageLoadTime / SWIPE_INTERVAL_MS);
+        limit = Math.max(1, Math.min(limit, mMaxLimit));
+        if (limit != mLimit) {
+            TjekLogCat.INSTANCE.v(String.format(Locale.ENGLISH, "%s: offscreen page limit %s -> %s (average load %.0f ms)", TAG, mLimit, limit, mAverageLoadTime));
+            mLimit = limit;
+            if (mListener != null) {
+                mListener.onOffscreenPageLimitChanged(limit);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.tjek.sdk.publicationviewer.paged.libs.verso;
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.os.Handler;
+import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+
+import com.tjek.sdk.R;
+import com.tjek.sdk.publicationviewer.paged.libs.verso.viewpager.CenteredViewPager;
+import com.tjek.sdk.publicationviewer.paged.libs.zoomlayout.ZoomLayout;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps the spread views ({@link ZoomLayout} and its page container) of the {@link VersoSpread}s
+ * that went out of the pager, so the next spreads reuse them instead of inflating new ones.
+ * The page views inside them are recycled by {@link VersoSpreadConfiguration#recyclePageView(android.view.View)}.
+ *
+ * <p>Used by the {@link VersoViewAdapter}, where the spreads are views of the pager without a fragment.</p>
+ */
+public class SpreadViewPool {
+
+    public static final String TAG = SpreadViewPool.class.getSimpleName();
+
+    // A swipe destroys one spread and creates one, so a few views are enough
+    private static final int MAX_SIZE = 4;
+
+    private final ArrayList<ZoomLayout> mZoomLayouts = new ArrayList<>(MAX_SIZE);
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    public ZoomLayout obtain(LayoutInflater inflater, ViewGroup container) {
+        if (!mZoomLayouts.isEmpty()) {
+            return mZoomLayouts.remove(mZoomLayouts.size() - 1);
+        }
+        return (ZoomLayout) inflater.inflate(R.layout.tjek_sdk_verso_page_layout, container, false);
+    }
+
+    public void recycle(final ZoomLayout zoomLayout) {
+        if (zoomLayout.getParent() != null) {
+            // The fragment manager may remove the view from the pager after onDestroyView, try again when it's done
+            mHandler.post(() -> {
+                if (zoomLayout.getParent() == null) {
+                    add(zoomLayout);
+                }
+            });
+            return;
+        }
+        add(zoomLayout);
+    }
+
+    private void add(ZoomLayout zoomLayout) {
+        if (mZoomLayouts.size() >= MAX_SIZE || mZoomLayouts.contains(zoomLayout)) {
+            return;
+        }
+        zoomLayout.reset();
+        // The pager stores the position and width of the spread in the layout params
+        zoomLayout.setLayoutParams(new CenteredViewPager.LayoutParams());
+        mZoomLayouts.add(zoomLayout);
+    }
+
+    public void clear() {
+        mHandler.removeCallbacksAndMessages(null);
+        mZoomLayouts.clear();
+    }
+}
@@ -17,18 +17,20 @@ package com.tjek.sdk.publicationviewer.paged.libs.verso;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
 import java.util.ArrayList;
 import java.util.List;
 
-public class VersoAdapter extends FragmentStatelessPagerAdapter {
+public class VersoAdapter extends FragmentStatelessPagerAdapter implements VersoSpreadAdapter {
 
     public static final String TAG = VersoAdapter.class.getSimpleName();
 
     private final VersoSpreadConfiguration mConfiguration;
     private VersoPageViewListener.EventListener mEventListener;
     private VersoPageViewListener.OnLoadCompleteListener mOnLoadCompleteListener;
+    private OffscreenPageLimitPolicy mOffscreenPageLimitPolicy;
 
     public VersoAdapter(FragmentManager fragmentManager, VersoSpreadConfiguration configuration) {
         super(fragmentManager);
@@ -48,6 +50,7 @@ public class VersoAdapter extends FragmentStatelessPagerAdapter {
         VersoPageViewFragment fragment = (VersoPageViewFragment) super.instantiateItem(container, position);
         fragment.setVersoPageViewEventListener(mEventListener);
         fragment.setOnLoadCompleteListener(mOnLoadCompleteListener);
+        fragment.setOffscreenPageLimitPolicy(mOffscreenPageLimitPolicy);
         return fragment;
     }
 
@@ -65,6 +68,17 @@ public class VersoAdapter extends FragmentStatelessPagerAdapter {
         return (VersoPageViewFragment) getItem(position);
     }
 
+    @Nullable
+    @Override
+    public VersoSpread getSpread(int position) {
+        Fragment[] fragments = getFragments();
+        if (position < 0 || position >= fragments.length || fragments[position] == null) {
+            return null;
+        }
+        VersoPageViewFragment f = (VersoPageViewFragment) fragments[position];
+        return f.isAdded() ? f.getSpread() : null;
+    }
+
     public List<VersoPageViewFragment> getVersoFragments() {
         ArrayList<VersoPageViewFragment> list = new ArrayList<>();
         for (Fragment f : getFragments()) {
@@ -80,12 +94,19 @@ public class VersoAdapter extends FragmentStatelessPagerAdapter {
         return super.getFragments();
     }
 
+    @Override
     public void setEventListener(VersoPageViewListener.EventListener listener) {
         mEventListener = listener;
     }
 
+    @Override
     public void setOnLoadCompleteListener(VersoPageViewListener.OnLoadCompleteListener listener) {
         mOnLoadCompleteListener = listener;
     }
 
+    @Override
+    public void setOffscreenPageLimitPolicy(OffscreenPageLimitPolicy policy) {
+        mOffscreenPageLimitPolicy = policy;
+    }
+
 }
@@ -25,6 +25,7 @@ import android.view.ViewTreeObserver;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.viewpager.widget.PagerAdapter;
 import androidx.viewpager.widget.ViewPager;
 
 import com.tjek.sdk.R;
@@ -34,10 +35,7 @@ import com.tjek.sdk.publicationviewer.paged.utils.NumberUtils;
 import com.tjek.sdk.publicationviewer.paged.libs.verso.viewpager.CenteredViewPager;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Locale;
 
@@ -53,20 +51,26 @@ public class VersoFragment extends Fragment {
 
     VersoSpreadConfiguration mVersoSpreadConfiguration;
     VersoViewPager mVersoViewPager;
-    VersoAdapter mVersoAdapter;
+    VersoSpreadAdapter mVersoAdapter;
 
     boolean mBounceDecoreEnabled = false;
     HorizontalOverScrollBounceEffectDecorator mBounceDecore;
     int mCurrentOrientation;
     int mPage = 0;
-    HashSet<Integer> mCurrentVisiblePages = new HashSet<>();
+    // Reused on every scroll frame
+    BitSet mCurrentVisiblePages = new BitSet();
+    BitSet mNextVisiblePages = new BitSet();
+    // In the coordinates of the VersoViewPager
     Rect mViewPagerHitRect = new Rect();
-    int[] mOutLocation = new int[2];
     VersoSavedState mSavedState;
 
     PageChangeDispatcher mPageChangeDispatcher;
     PageViewEventDispatcher mDispatcher;
     VersoOnLayoutChanged mVersoOnLayoutChanged;
+    OffscreenPageLimitPolicy mOffscreenPageLimitPolicy;
+    boolean mRecycleSpreadViews = false;
+    SpreadViewPool mSpreadViewPool;
+    FrameTimingRecorder mFrameTimingRecorder;
 
     List<VersoPageChangeListener> mPageChangeListeners;
     VersoPageViewListener.EventListener mEventListener;
@@ -77,7 +81,23 @@ public class VersoFragment extends Fragment {
     public View onCreateView(LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
         mVersoViewPager = (VersoViewPager) inflater.inflate(R.layout.tjek_sdk_verso_fragment, container, false);
 
-        mVersoViewPager.setOffscreenPageLimit(2);
+        mOffscreenPageLimitPolicy = new OffscreenPageLimitPolicy(inflater.getContext(), limit -> {
+            if (mVersoViewPager != null) mVersoViewPager.setOffscreenPageLimit(limit);
+        });
+        mVersoViewPager.setOffscreenPageLimit(mOffscreenPageLimitPolicy.getLimit());
+        mVersoViewPager.setFrameTimingRecorder(mFrameTimingRecorder);
+        if (mSpreadViewPool != null) {
+            mSpreadViewPool.clear();
+        }
+        mSpreadViewPool = mRecycleSpreadViews ? new SpreadViewPool() : null;
+        if (mVersoAdapter instanceof VersoViewAdapter) {
+            // The adapter holds the spreads and the pool of the previous view
+            mVersoAdapter.clearState();
+            mVersoAdapter = null;
+        }
+        if (mVersoAdapter != null) {
+            mVersoAdapter.setOffscreenPageLimitPolicy(mOffscreenPageLimitPolicy);
+        }
 
         mVersoOnLayoutChanged = new VersoOnLayoutChanged();
         mVersoViewPager.addOnLayoutChangeListener(mVersoOnLayoutChanged);
@@ -89,6 +109,14 @@ public class VersoFragment extends Fragment {
         return mVersoViewPager;
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (mSpreadViewPool != null) {
+            mSpreadViewPool.clear();
+        }
+    }
+
     @Override
     public void onViewStateRestored(@Nullable Bundle savedInstanceState) {
         super.onViewStateRestored(savedInstanceState);
@@ -106,7 +134,7 @@ public class VersoFragment extends Fragment {
         @Override
         public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
             if (left != oldLeft || top != oldTop || right != oldRight || bottom != oldBottom) {
-                updateHitRect(mVersoViewPager, mViewPagerHitRect, mOutLocation);
+                updateHitRect(mVersoViewPager, mVersoViewPager, mViewPagerHitRect);
                 updateVisiblePages();
             }
         }
@@ -162,8 +190,8 @@ public class VersoFragment extends Fragment {
                 // Scrolling left
                 int nextPos = mScrollPosition-1;
                 if (nextPos >= 0) {
-                    VersoPageViewFragment f = mVersoAdapter.getVersoFragment(nextPos);
-                    updateHitRect(f.getView(), mFragmentHitRect, mOutLocation);
+                    VersoSpread s = mVersoAdapter.getSpread(nextPos);
+                    updateHitRect(s != null ? s.getZoomLayout() : null, mVersoViewPager, mFragmentHitRect);
                     if (mFragmentHitRect.centerX() >= mViewPagerHitRect.centerX()
                             || (position == 0 && positionOffsetPixels <= 0)) {
                         scrollTo(nextPos);
@@ -173,8 +201,8 @@ public class VersoFragment extends Fragment {
                     (position == mScrollPosition && positionOffset > mLastOffset)) {
                 // Scrolling right
                 int nextPos = mScrollPosition+1;
-                VersoPageViewFragment f = mVersoAdapter.getVersoFragment(nextPos);
-                updateHitRect(f.getView(), mFragmentHitRect, mOutLocation);
+                VersoSpread s = mVersoAdapter.getSpread(nextPos);
+                updateHitRect(s != null ? s.getZoomLayout() : null, mVersoViewPager, mFragmentHitRect);
                 if (mFragmentHitRect.centerX() <= mViewPagerHitRect.centerX()
                         || (nextPos == mVersoAdapter.getCount()-1 && mFragmentHitRect.right <= mViewPagerHitRect.right)) {
                     scrollTo(nextPos);
@@ -204,6 +232,9 @@ public class VersoFragment extends Fragment {
         @Override
         public void onPageScrollStateChanged(int state) {
             mState = state;
+            if (mFrameTimingRecorder != null) {
+                mFrameTimingRecorder.setInteraction(FrameTimingRecorder.INTERACTION_SWIPE, state != ViewPager.SCROLL_STATE_IDLE);
+            }
             moveTo(mVersoViewPager.getCurrentItem());
         }
 
@@ -242,88 +273,87 @@ public class VersoFragment extends Fragment {
     /**
      * Determine if there is any change to the currently visible VersoPageView's in the ViewPager.
      * If so, callbacks will be triggered.
+     * This runs on every scroll frame, so nothing is allocated unless the visible pages change.
      */
     private void updateVisiblePages() {
         if (mVersoAdapter == null) {
             return;
         }
-        List<VersoPageViewFragment> fragments = mVersoAdapter.getVersoFragments();
-        if (fragments.isEmpty()) {
-            // this happens e.g. when hotspots are loaded - the mFragments in VersoAdapter is cleared
-            return;
+        int count = mVersoAdapter.getCount();
+        boolean hasSpreads = false;
+        mNextVisiblePages.clear();
+        for (int i = 0; i < count; i++) {
+            VersoSpread s = mVersoAdapter.getSpread(i);
+            if (s != null) {
+                hasSpreads = true;
+                s.getVisiblePages(mVersoViewPager, mViewPagerHitRect, mNextVisiblePages);
+            }
         }
-        HashSet<Integer> currentPages = new HashSet<>();
-        for (VersoPageViewFragment f : fragments) {
-            f.getVisiblePages(mViewPagerHitRect, currentPages);
+        if (!hasSpreads) {
+            // this happens e.g. when hotspots are loaded - the spreads in the adapter are cleared
+            return;
         }
-        Collection<Integer> added = diff(currentPages, mCurrentVisiblePages);
-        Collection<Integer> removed = diff(mCurrentVisiblePages, currentPages);
-        if (!added.isEmpty() || !removed.isEmpty()) {
+        if (!mNextVisiblePages.equals(mCurrentVisiblePages)) {
             // There is new state in visible pages, we need to update
-            int[] arrayAdded = collectionToArray(added);
-            int[] arrayRemoved = collectionToArray(removed);
-            for (VersoPageViewFragment f : fragments) {
-                f.dispatchPageVisibilityChange(arrayAdded, arrayRemoved);
+            int[] arrayAdded = diff(mNextVisiblePages, mCurrentVisiblePages);
+            int[] arrayRemoved = diff(mCurrentVisiblePages, mNextVisiblePages);
+            for (int i = 0; i < count; i++) {
+                VersoSpread s = mVersoAdapter.getSpread(i);
+                if (s != null) {
+                    s.dispatchPageVisibilityChange(arrayAdded, arrayRemoved);
+                }
             }
             mCurrentVisiblePages.clear();
-            mCurrentVisiblePages.addAll(currentPages);
+            mCurrentVisiblePages.or(mNextVisiblePages);
             dispatchOnVisiblePageIndexesChanged(getVisiblePages(), arrayAdded, arrayRemoved);
         }
     }
 
-    private static void updateHitRect(View view, Rect rect, int[] out) {
-        if (view != null) {
-            view.getHitRect(rect);
-            view.getLocationOnScreen(out);
-            rect.offsetTo(out[0], out[1]);
-        } else {
-            rect.set(0,0,0,0);
-        }
-    }
-
     /**
-     * Takes a {@link Collection} of {@link Integer}, sorts it in ascending order and converts it to an array.
-     * @param collection A {@link Collection} to convert
-     * @return An array
+     * Set the rect of a view in the coordinates of one of its ancestors, from the layout positions of the
+     * views in between. Unlike {@link View#getLocationOnScreen(int[])}, it doesn't walk the whole view tree.
+     * @param view The view to measure, or null for an empty rect
+     * @param ancestor An ancestor of the view, or the view itself
+     * @param rect The rect to write to
      */
-    private static int[] sortCollection(Collection<Integer> collection) {
-        List<Integer> ints = new ArrayList<>();
-        for (Integer i : collection) {
-            if (i != null) {
-                ints.add(i);
+    static void updateHitRect(View view, View ancestor, Rect rect) {
+        if (view == null) {
+            rect.set(0,0,0,0);
+            return;
+        }
+        float x = 0;
+        float y = 0;
+        View v = view;
+        while (v != ancestor) {
+            x += v.getX();
+            y += v.getY();
+            if (!(v.getParent() instanceof View)) {
+                break;
             }
+            v = (View) v.getParent();
+            x -= v.getScrollX();
+            y -= v.getScrollY();
         }
-        Collections.sort(ints);
-        return collectionToArray(ints);
+        int left = Math.round(x);
+        int top = Math.round(y);
+        rect.set(left, top, left + view.getWidth(), top + view.getHeight());
     }
 
     /**
-     * Takes a {@link Collection} of {@link Integer} and converts it to an array.
-     * @param collection A {@link Collection} to convert
-     * @return An array
+     * Finds the pages set in {@code lhs} but not in {@code rhs}.
+     * @param lhs {@link BitSet} to find new pages in
+     * @param rhs {@link BitSet} diff against
+     * @return The pages, in ascending order
      */
-    private static int[] collectionToArray(Collection<Integer> collection) {
-        int[] tmp = new int[collection.size()];
-        int i = 0;
-        for (Iterator<Integer> it = collection.iterator(); it.hasNext(); i++) {
-            tmp[i] = it.next();
+    private static int[] diff(BitSet lhs, BitSet rhs) {
+        int count = 0;
+        for (int i = lhs.nextSetBit(0); i >= 0; i = lhs.nextSetBit(i + 1)) {
+            if (!rhs.get(i)) count++;
         }
-        return tmp;
-    }
-
-    /**
-     * Finds the diff between two {@link Collection}'s, so elements found in {@code lhs} but not in
-     * {@code rhs} will be added to the result set.
-     * @param lhs {@link Collection} to find new elements in
-     * @param rhs {@link Collection} diff against
-     * @return A list containing the result of the diff
-     */
-    private static <T> Collection<T> diff(Collection<T> lhs, Collection<T> rhs) {
-        Collection<T> result = new ArrayList<>();
-        for (T t : lhs) {
-            if (!rhs.contains(t)) {
-                result.add(t);
-            }
+        int[] result = new int[count];
+        count = 0;
+        for (int i = lhs.nextSetBit(0); i >= 0; i = lhs.nextSetBit(i + 1)) {
+            if (!rhs.get(i)) result[count++] = i;
         }
         return result;
     }
@@ -333,7 +363,12 @@ public class VersoFragment extends Fragment {
      * @return the visible pages
      */
     public int[] getVisiblePages() {
-        return sortCollection(mCurrentVisiblePages);
+        int[] pages = new int[mCurrentVisiblePages.cardinality()];
+        int i = 0;
+        for (int page = mCurrentVisiblePages.nextSetBit(0); page >= 0; page = mCurrentVisiblePages.nextSetBit(page + 1)) {
+            pages[i++] = page;
+        }
+        return pages;
     }
 
     public int getPosition() {
@@ -356,6 +391,31 @@ public class VersoFragment extends Fragment {
         return mBounceDecoreEnabled;
     }
 
+    /**
+     * Collect the frame times of the {@link VersoViewPager} and the time spent in populate.
+     * Must be called before the view is created.
+     *
+     * @param recorder The recorder, or null to disable the measurements
+     */
+    public void setFrameTimingRecorder(FrameTimingRecorder recorder) {
+        mFrameTimingRecorder = recorder;
+    }
+
+    public FrameTimingRecorder getFrameTimingRecorder() {
+        return mFrameTimingRecorder;
+    }
+
+    /**
+     * Show the spreads as views added straight to the {@link VersoViewPager} (see {@link VersoViewAdapter}),
+     * instead of a {@link VersoPageViewFragment} per spread, and reuse the views of the spreads leaving the pager
+     * for the new spreads. Must be called before the view is created.
+     *
+     * @param recycle true to recycle the spread views
+     */
+    public void setRecycleSpreadViews(boolean recycle) {
+        mRecycleSpreadViews = recycle;
+    }
+
     /**
      * Set the {@link VersoFragment} to show the given page number in the catalog.
      * Note that page number doesn't directly correlate to the position of the {@link VersoViewPager}.
@@ -403,6 +463,9 @@ public class VersoFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
+        if (mFrameTimingRecorder != null && mVersoViewPager.getDisplay() != null) {
+            mFrameTimingRecorder.setRefreshRate(mVersoViewPager.getDisplay().getRefreshRate());
+        }
         onInternalResume(getResources().getConfiguration());
     }
 
@@ -450,7 +513,7 @@ public class VersoFragment extends Fragment {
             }
             mCurrentVisiblePages.clear();
             for (int page : mSavedState.getVisiblePages()) {
-                mCurrentVisiblePages.add(page);
+                mCurrentVisiblePages.set(page);
             }
             if (mSavedState.getPages().length > 0) {
                 mPage = mSavedState.getPages()[0];
@@ -475,14 +538,19 @@ public class VersoFragment extends Fragment {
     private void ensureAdapter() {
         if (mVersoSpreadConfiguration != null) {
             if (mVersoAdapter == null) {
-                mVersoAdapter = new VersoAdapter(getChildFragmentManager(), mVersoSpreadConfiguration);
+                if (mSpreadViewPool != null) {
+                    mVersoAdapter = new VersoViewAdapter(mVersoSpreadConfiguration, mSpreadViewPool);
+                } else {
+                    mVersoAdapter = new VersoAdapter(getChildFragmentManager(), mVersoSpreadConfiguration);
+                }
                 mDispatcher = new PageViewEventDispatcher();
                 mVersoAdapter.setEventListener(mDispatcher);
                 mVersoAdapter.setOnLoadCompleteListener(mLoadCompleteListener);
+                mVersoAdapter.setOffscreenPageLimitPolicy(mOffscreenPageLimitPolicy);
             }
 
             if (mVersoViewPager != null && mVersoViewPager.getAdapter() == null && mVersoSpreadConfiguration.hasData()) {
-                mVersoViewPager.setAdapter(mVersoAdapter);
+                mVersoViewPager.setAdapter((PagerAdapter) mVersoAdapter);
                 setPage(mPage);
                 // Manually trigger the first pageChange event
                 if (mPageChangeDispatcher.mCurrentPages.length == 0) {
@@ -529,30 +597,31 @@ public class VersoFragment extends Fragment {
         outState.putParcelable(SAVED_STATE, mSavedState);
     }
 
+    protected VersoSpread getCurrentSpread() {
+        return mVersoAdapter != null ? mVersoAdapter.getSpread(getPosition()) : null;
+    }
+
+    /**
+     * @return The fragment of the current spread, or null if the spreads are recycled views
+     * (see {@link #setRecycleSpreadViews(boolean)})
+     */
     protected VersoPageViewFragment getCurrentFragment() {
-        if (mVersoAdapter != null) {
-            for (Fragment fragment : mVersoAdapter.getFragments()) {
-                VersoPageViewFragment f = (VersoPageViewFragment) fragment;
-                if (f != null && f.getSpreadPosition() == getPosition()) {
-                    return f;
-                }
-            }
-        }
-        return null;
+        VersoSpread s = getCurrentSpread();
+        return s != null ? s.getHost() : null;
     }
 
     /**
      * @return {@code true} is the current spread is at a scaled state, else {@code false}
      */
     public boolean isCurrentSpreadScaled() {
-        VersoPageViewFragment f = getCurrentFragment();
-        return f != null && f.isScaled();
+        VersoSpread s = getCurrentSpread();
+        return s != null && s.isScaled();
     }
 
     public void resetCurrentSpreadScale(boolean animate) {
-        VersoPageViewFragment f = getCurrentFragment();
-        if (f != null && f.getZoomLayout() != null) {
-            f.getZoomLayout().setScale(1.0f, animate);
+        VersoSpread s = getCurrentSpread();
+        if (s != null && s.hasView()) {
+            s.getZoomLayout().setScale(1.0f, animate);
         }
     }
 
@@ -562,6 +631,13 @@ public class VersoFragment extends Fragment {
 
         @Override
         public boolean onVersoPageViewEvent(@NonNull VersoPageViewEvent event) {
+            if (mFrameTimingRecorder != null) {
+                if (event instanceof VersoPageViewEvent.ZoomBegin || event instanceof VersoPageViewEvent.PanBegin) {
+                    mFrameTimingRecorder.setInteraction(FrameTimingRecorder.INTERACTION_ZOOM, true);
+                } else if (event instanceof VersoPageViewEvent.ZoomEnd || event instanceof VersoPageViewEvent.PanEnd) {
+                    mFrameTimingRecorder.setInteraction(FrameTimingRecorder.INTERACTION_ZOOM, false);
+                }
+            }
             return mEventListener != null && mEventListener.onVersoPageViewEvent(event);
         }
 
@@ -15,28 +15,22 @@ package com.tjek.sdk.publicationviewer.paged.libs.verso;
  * limitations under the License.
  */
 import android.graphics.Rect;
-import android.graphics.RectF;
 import android.os.Bundle;
-import android.view.Gravity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.FrameLayout;
 
-import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
-import com.tjek.sdk.R;
-import com.tjek.sdk.publicationviewer.paged.utils.NumberUtils;
 import com.tjek.sdk.publicationviewer.paged.libs.zoomlayout.ZoomLayout;
-import com.tjek.sdk.publicationviewer.paged.libs.zoomlayout.Event;
-import com.tjek.sdk.publicationviewer.paged.libs.zoomlayout.EventListener;
-import com.tjek.sdk.publicationviewer.paged.libs.zoomlayout.ZoomOnDoubleTapListener;
 
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.BitSet;
 
+/**
+ * Hosts a {@link VersoSpread} in a fragment, for the {@link VersoAdapter}.
+ */
 @SuppressWarnings("unused")
 public class VersoPageViewFragment extends Fragment {
 
@@ -52,140 +46,77 @@ public class VersoPageViewFragment extends Fragment {
         return fragment;
     }
 
-    // Views
-    private ZoomLayout mZoomLayout;
-    private VersoHorizontalLayout mPageContainer;
-    private View mSpreadOverlay;
-    private OverlaySizer mOverlaySizer;
+    /**
+     * A fragment that is never added to a FragmentManager, so the events of the spreads of the
+     * {@link VersoViewAdapter} have a fragment, as the public api promises. Only its getters work.
+     */
+    static VersoPageViewFragment unattached(VersoSpread spread) {
+        VersoPageViewFragment fragment = new VersoPageViewFragment();
+        fragment.mSpread = spread;
+        fragment.mPosition = spread.mPosition;
+        fragment.mPages = spread.mPages;
+        return fragment;
+    }
+
+    private VersoSpread mSpread;
 
     // Input data
     private VersoSpreadConfiguration mVersoSpreadConfiguration;
-    private VersoSpreadProperty mProperty;
     protected int mPosition;
     protected int[] mPages;
 
     // listeners
     private VersoPageViewListener.EventListener mVersoPageViewEventListener;
     private VersoPageViewListener.OnLoadCompleteListener mOnLoadCompleteListener;
+    private OffscreenPageLimitPolicy mOffscreenPageLimitPolicy;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         if (getArguments() != null) {
             mPosition = getArguments().getInt(KEY_POSITION);
-            mProperty = mVersoSpreadConfiguration.getSpreadProperty(mPosition);
-            mPages = mProperty.getPages();
+            mSpread = new VersoSpread(mVersoSpreadConfiguration, mPosition, this);
+            mSpread.setVersoPageViewEventListener(mVersoPageViewEventListener);
+            mSpread.setOnLoadCompleteListener(mOnLoadCompleteListener);
+            mSpread.setOffscreenPageLimitPolicy(mOffscreenPageLimitPolicy);
+            mPages = mSpread.mPages;
         }
     }
 
     @Nullable
     @Override
     public View onCreateView(LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
-        mZoomLayout = (ZoomLayout) inflater.inflate(R.layout.tjek_sdk_verso_page_layout, container, false);
-
-        // scale operations on large bitmaps are horrible slow
-        // for some reason, this works. LAYER_TYPE_SOFTWARE works too...
-        mZoomLayout.setLayerType(View.LAYER_TYPE_HARDWARE, null);
-
-        mZoomLayout.addEventListener(new ZoomLayoutEventDispatcher());
-
-        boolean zoom = !NumberUtils.isEqual(mProperty.getMaxZoomScale(), mProperty.getMinZoomScale());
-        mZoomLayout.setAllowZoom(zoom);
-        mZoomLayout.setMinScale(mProperty.getMinZoomScale());
-        mZoomLayout.setMaxScale(mProperty.getMaxZoomScale());
-
-        mZoomLayout.setZoomDuration(180);
-
-        mPageContainer = mZoomLayout.findViewById(R.id.verso_pages_container);
-        mSpreadOverlay = mVersoSpreadConfiguration.getSpreadOverlay(mZoomLayout, mPages);
-        if (mSpreadOverlay != null) {
-            mZoomLayout.addView(mSpreadOverlay);
-        }
-
-        return mZoomLayout;
-
+        return mSpread.createView(inflater, container);
     }
 
     @Override
     public void onStart() {
         super.onStart();
-        addVersoPageViews();
-        mOverlaySizer = new OverlaySizer();
-        mPageContainer.addOnLayoutChangeListener(mOverlaySizer);
-    }
-
-    private void addVersoPageViews() {
-        for (int page : mPages) {
-            View view = mVersoSpreadConfiguration.getPageView(mPageContainer, page);
-            try {
-                if (view != null && mOnLoadCompleteListener != null) {
-                    ((VersoPageView)view).setOnLoadCompleteListener(mOnLoadCompleteListener);
-                }
-            } catch (ClassCastException e) {
-                throw new IllegalArgumentException("The view must implement VersoPageView", e);
-            }
-            if (view != null) {
-                mPageContainer.addView(view);
-            }
-        }
+        mSpread.addPageViews();
     }
 
     @Override
     public void onStop() {
         super.onStop();
-        mPageContainer.removeOnLayoutChangeListener(mOverlaySizer);
-        mOverlaySizer = null;
-        mPageContainer.removeAllViews();
+        mSpread.removePageViews();
     }
 
-    public ZoomLayout getZoomLayout() {
-        return mZoomLayout;
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        mSpread.destroyView();
     }
 
-    private class OverlaySizer implements View.OnLayoutChangeListener {
-
-        @Override
-        public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
-            boolean changed = left != oldLeft || top != oldTop || right != oldRight || bottom != oldBottom;
-            if (changed && mSpreadOverlay != null) {
-                Rect r = getChildPosition();
-                FrameLayout.LayoutParams lp = (FrameLayout.LayoutParams) mSpreadOverlay.getLayoutParams();
-                lp.width = r.width();
-                lp.height = r.height();
-                lp.gravity = Gravity.CENTER;
-                mSpreadOverlay.setLayoutParams(lp);
-            }
-        }
+    public VersoSpread getSpread() {
+        return mSpread;
     }
 
-    private Rect getChildPosition() {
-        Rect rect = new Rect();
-        int childCount = mPageContainer.getChildCount();
-        for (int i = 0; i < childCount; i++) {
-            final View child = mPageContainer.getChildAt(i);
-            if (i == 0) {
-                // First item, just set the rect
-                rect.set(child.getLeft(), child.getTop(), child.getRight(), child.getBottom());
-            } else {
-                if (rect.left > child.getLeft()) {
-                    rect.left = child.getLeft();
-                }
-                if (rect.top > child.getTop()) {
-                    rect.top = child.getTop();
-                }
-                if (rect.right < child.getRight()) {
-                    rect.right = child.getRight();
-                }
-                if (rect.bottom < child.getBottom()) {
-                    rect.bottom = child.getBottom();
-                }
-            }
-        }
-        return rect;
+    public ZoomLayout getZoomLayout() {
+        return mSpread == null ? null : mSpread.getZoomLayout();
     }
 
     public View getSpreadOverlay() {
-        return mSpreadOverlay;
+        return mSpread == null ? null : mSpread.getSpreadOverlay();
     }
 
     public int getSpreadPosition() {
@@ -202,49 +133,48 @@ public class VersoPageViewFragment extends Fragment {
 
     public void setVersoPageViewEventListener(VersoPageViewListener.EventListener l) {
         mVersoPageViewEventListener = l;
+        if (mSpread != null) mSpread.setVersoPageViewEventListener(l);
     }
 
     public void setOnLoadCompleteListener(VersoPageViewListener.OnLoadCompleteListener listener) {
         mOnLoadCompleteListener = listener;
+        if (mSpread != null) mSpread.setOnLoadCompleteListener(listener);
+    }
+
+    public void setOffscreenPageLimitPolicy(OffscreenPageLimitPolicy policy) {
+        mOffscreenPageLimitPolicy = policy;
+        if (mSpread != null) mSpread.setOffscreenPageLimitPolicy(policy);
     }
 
     public void dispatchZoom(float scale) {
-        int count = mPageContainer.getChildCount();
-        for (int i = 0; i < count; i++) {
-            final View v = mPageContainer.getChildAt(i);
-            if (v instanceof VersoPageView) {
-                ((VersoPageView)v).onZoom(scale);
-            }
-        }
+        mSpread.dispatchZoom(scale);
+    }
+
+    public void dispatchViewportChanged() {
+        mSpread.dispatchViewportChanged();
     }
 
     public boolean isScaled() {
-        return mZoomLayout.isScaled();
+        return mSpread.isScaled();
     }
 
     public boolean isScaling() {
-        return mZoomLayout.isScaling();
+        return mSpread.isScaling();
     }
 
     public boolean isTranslating() {
-        return mZoomLayout.isTranslating();
-    }
-
-    public void getVisiblePages(Rect bounds, HashSet<Integer> result) {
-        if (mZoomLayout == null) {
-            return;
-        }
-        Rect mHitBounds = new Rect();
-        int[] pos = new int[2];
-        int count = mPageContainer.getChildCount();
-        for (int i = 0; i < count; i++) {
-            final View v = mPageContainer.getChildAt(i);
-            v.getHitRect(mHitBounds);
-            v.getLocationOnScreen(pos);
-            mHitBounds.offsetTo(pos[0], pos[1]);
-            if (Rect.intersects(bounds, mHitBounds)) {
-                result.add(mPages[i]);
-            }
+        return mSpread.isTranslating();
+    }
+
+    /**
+     * Add the pages of this spread that intersect the given bounds.
+     * @param parent The view the bounds are relative to, an ancestor of this fragment's view
+     * @param bounds The visible area, in the coordinates of parent
+     * @param result The set the visible pages are added to
+     */
+    public void getVisiblePages(View parent, Rect bounds, BitSet result) {
+        if (mSpread != null) {
+            mSpread.getVisiblePages(parent, bounds, result);
         }
     }
 
@@ -253,95 +183,6 @@ public class VersoPageViewFragment extends Fragment {
             // If scrolling is too fast, the MessageQueue (or something related) can't keep up, and we crash...
             return;
         }
-        for (int i = 0; i < mPageContainer.getChildCount(); i++) {
-            View v = mPageContainer.getChildAt(i);
-            int page = mPages[i];
-            if (v instanceof VersoPageView) {
-                VersoPageView pv = (VersoPageView) v;
-                for (int a : added) if (a == page) pv.onVisible();
-                for (int r : removed) if (r == page) pv.onInvisible();
-            }
-        }
-    }
-
-    private Rect getZoomLayoutRect(ZoomLayout zl) {
-        RectF r = zl.getDrawRect();
-        return new Rect(Math.round(r.left), Math.round(r.top), Math.round(r.right), Math.round(r.bottom));
-    }
-
-    // Takes events from ZoomLayout, transform them into VersoPageViewEvent and propagate them
-    private class ZoomLayoutEventDispatcher implements EventListener {
-
-        private final EventListener mZoomDoubleTapListener = new ZoomOnDoubleTapListener(false);
-
-        @Override
-        public boolean onEvent(@NonNull Event event) {
-            if (mVersoPageViewEventListener == null)
-                return false;
-            if (event instanceof Event.Touch) {
-                Event.Touch e = (Event.Touch) event;
-                return mVersoPageViewEventListener.onVersoPageViewEvent(
-                        new VersoPageViewEvent.Touch(e.getAction(), new VersoTapInfo(e.getInfo(), VersoPageViewFragment.this))
-                );
-            }
-            if (event instanceof Event.Tap) {
-                Event.Tap e = (Event.Tap) event;
-                return mVersoPageViewEventListener.onVersoPageViewEvent(
-                        new VersoPageViewEvent.Tap(new VersoTapInfo(e.getInfo(), VersoPageViewFragment.this))
-                );
-            }
-            if (event instanceof Event.DoubleTap) {
-                Event.DoubleTap e = (Event.DoubleTap) event;
-                boolean consumed = mVersoPageViewEventListener.onVersoPageViewEvent(
-                        new VersoPageViewEvent.DoubleTap(new VersoTapInfo(e.getInfo(), VersoPageViewFragment.this)));
-                return !consumed && mZoomDoubleTapListener.onEvent(event);
-            }
-            if (event instanceof Event.LongTap) {
-                Event.LongTap e = (Event.LongTap) event;
-                return mVersoPageViewEventListener.onVersoPageViewEvent(
-                        new VersoPageViewEvent.LongTap(new VersoTapInfo(e.getInfo(), VersoPageViewFragment.this))
-                );
-            }
-            if (event instanceof Event.ZoomBegin) {
-                Event.ZoomBegin e = (Event.ZoomBegin) event;
-                return mVersoPageViewEventListener.onVersoPageViewEvent(
-                        new VersoPageViewEvent.ZoomBegin(new VersoZoomPanInfo(VersoPageViewFragment.this, e.getScale(), getZoomLayoutRect(e.getView())))
-                );
-            }
-            if (event instanceof Event.Zoom) {
-                Event.Zoom e = (Event.Zoom) event;
-                dispatchZoom(e.getScale());
-                return mVersoPageViewEventListener.onVersoPageViewEvent(
-                        new VersoPageViewEvent.Zoom(new VersoZoomPanInfo(VersoPageViewFragment.this, e.getScale(), getZoomLayoutRect(e.getView())))
-                );
-            }
-            if (event instanceof Event.ZoomEnd) {
-                Event.ZoomEnd e = (Event.ZoomEnd) event;
-                return mVersoPageViewEventListener.onVersoPageViewEvent(
-                        new VersoPageViewEvent.ZoomEnd(new VersoZoomPanInfo(VersoPageViewFragment.this, e.getScale(), getZoomLayoutRect(e.getView())))
-                );
-            }
-            if (event instanceof Event.PanBegin) {
-                Event.PanBegin e = (Event.PanBegin) event;
-                return mVersoPageViewEventListener.onVersoPageViewEvent(
-                        new VersoPageViewEvent.PanBegin(new VersoZoomPanInfo(VersoPageViewFragment.this, e.getView().getScale(), getZoomLayoutRect(e.getView())))
-                );
-            }
-            if (event instanceof Event.Pan) {
-                Event.Pan e = (Event.Pan) event;
-                return mVersoPageViewEventListener.onVersoPageViewEvent(
-                        new VersoPageViewEvent.Pan(new VersoZoomPanInfo(VersoPageViewFragment.this, e.getView().getScale(), getZoomLayoutRect(e.getView())))
-                );
-            }
-            if (event instanceof Event.PanEnd) {
-                Event.PanEnd e = (Event.PanEnd) event;
-                return mVersoPageViewEventListener.onVersoPageViewEvent(
-                        new VersoPageViewEvent.PanEnd(new VersoZoomPanInfo(VersoPageViewFragment.this, e.getView().getScale(), getZoomLayoutRect(e.getView())))
-                );
-            }
-
-            return false;
-        }
-
+        mSpread.dispatchPageVisibilityChange(added, removed);
     }
 }
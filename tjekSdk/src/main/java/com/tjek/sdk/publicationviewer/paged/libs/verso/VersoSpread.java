@@ -0,0 +1,415 @@
+package com.tjek.sdk.publicationviewer.paged.libs.verso;
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.SystemClock;
+import android.view.Gravity;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.tjek.sdk.R;
+import com.tjek.sdk.publicationviewer.paged.utils.NumberUtils;
+import com.tjek.sdk.publicationviewer.paged.libs.zoomlayout.ZoomLayout;
+import com.tjek.sdk.publicationviewer.paged.libs.zoomlayout.Event;
+import com.tjek.sdk.publicationviewer.paged.libs.zoomlayout.EventListener;
+import com.tjek.sdk.publicationviewer.paged.libs.zoomlayout.ZoomOnDoubleTapListener;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A spread of the {@link VersoViewPager}: the {@link ZoomLayout} with the page views of the spread and its overlay.
+ *
+ * <p>It's hosted either by a {@link VersoPageViewFragment} ({@link VersoAdapter}) or directly by the pager
+ * ({@link VersoViewAdapter}), where the views come from a {@link SpreadViewPool} and no fragment is involved.</p>
+ */
+@SuppressWarnings("unused")
+public class VersoSpread {
+
+    public static final String TAG = VersoSpread.class.getSimpleName();
+
+    // Views
+    private ZoomLayout mZoomLayout;
+    private VersoHorizontalLayout mPageContainer;
+    private View mSpreadOverlay;
+    private OverlaySizer mOverlaySizer;
+
+    // Input data
+    private final VersoSpreadConfiguration mVersoSpreadConfiguration;
+    private final VersoSpreadProperty mProperty;
+    final int mPosition;
+    final int[] mPages;
+    @Nullable private final VersoPageViewFragment mHost;
+    private VersoPageViewFragment mEventFragment;
+
+    // listeners
+    private VersoPageViewListener.EventListener mVersoPageViewEventListener;
+    private VersoPageViewListener.OnLoadCompleteListener mOnLoadCompleteListener;
+    private OffscreenPageLimitPolicy mOffscreenPageLimitPolicy;
+    private SpreadViewPool mSpreadViewPool;
+    private final Rect mHitBounds = new Rect();
+    private final PageLoadTimer mPageLoadTimer = new PageLoadTimer();
+    private long mPageViewsAddedAt;
+
+    public VersoSpread(VersoSpreadConfiguration configuration, int position, @Nullable VersoPageViewFragment host) {
+        mVersoSpreadConfiguration = configuration;
+        mPosition = position;
+        mProperty = configuration.getSpreadProperty(position);
+        mPages = mProperty.getPages();
+        mHost = host;
+    }
+
+    public ZoomLayout createView(LayoutInflater inflater, @Nullable ViewGroup container) {
+        if (mSpreadViewPool != null) {
+            mZoomLayout = mSpreadViewPool.obtain(inflater, container);
+        } else {
+            mZoomLayout = (ZoomLayout) inflater.inflate(R.layout.tjek_sdk_verso_page_layout, container, false);
+        }
+
+        // scale operations on large bitmaps are horrible slow
+        // for some reason, this works. LAYER_TYPE_SOFTWARE works too...
+        mZoomLayout.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+
+        mZoomLayout.addEventListener(new ZoomLayoutEventDispatcher());
+
+        boolean zoom = !NumberUtils.isEqual(mProperty.getMaxZoomScale(), mProperty.getMinZoomScale());
+        mZoomLayout.setAllowZoom(zoom);
+        mZoomLayout.setMinScale(mProperty.getMinZoomScale());
+        mZoomLayout.setMaxScale(mProperty.getMaxZoomScale());
+
+        mZoomLayout.setZoomDuration(180);
+
+        mPageContainer = mZoomLayout.findViewById(R.id.verso_pages_container);
+        mSpreadOverlay = mVersoSpreadConfiguration.getSpreadOverlay(mZoomLayout, mPages);
+        if (mSpreadOverlay != null) {
+            mZoomLayout.addView(mSpreadOverlay);
+        }
+        return mZoomLayout;
+    }
+
+    public void addPageViews() {
+        mPageViewsAddedAt = SystemClock.uptimeMillis();
+        for (int page : mPages) {
+            View view = mVersoSpreadConfiguration.getPageView(mPageContainer, page);
+            try {
+                if (view != null && (mOnLoadCompleteListener != null || mOffscreenPageLimitPolicy != null)) {
+                    ((VersoPageView)view).setOnLoadCompleteListener(mPageLoadTimer);
+                }
+            } catch (ClassCastException e) {
+                throw new IllegalArgumentException("The view must implement VersoPageView", e);
+            }
+            if (view != null) {
+                mPageContainer.addView(view);
+            }
+        }
+        mOverlaySizer = new OverlaySizer();
+        mPageContainer.addOnLayoutChangeListener(mOverlaySizer);
+    }
+
+    public void removePageViews() {
+        mPageContainer.removeOnLayoutChangeListener(mOverlaySizer);
+        mOverlaySizer = null;
+        if (mSpreadViewPool != null) {
+            for (int i = mPageContainer.getChildCount() - 1; i >= 0; i--) {
+                View view = mPageContainer.getChildAt(i);
+                mPageContainer.removeViewAt(i);
+                mVersoSpreadConfiguration.recyclePageView(view);
+            }
+        } else {
+            mPageContainer.removeAllViews();
+        }
+    }
+
+    // Give the views back to the pool, if any. Called once the spread view is removed from the pager
+    public void destroyView() {
+        if (mSpreadViewPool != null && mZoomLayout != null) {
+            if (mSpreadOverlay != null) {
+                mZoomLayout.removeView(mSpreadOverlay);
+            }
+            mSpreadViewPool.recycle(mZoomLayout);
+        }
+        mZoomLayout = null;
+        mPageContainer = null;
+        mSpreadOverlay = null;
+    }
+
+    public boolean hasView() {
+        return mZoomLayout != null;
+    }
+
+    public ZoomLayout getZoomLayout() {
+        return mZoomLayout;
+    }
+
+    public View getSpreadOverlay() {
+        return mSpreadOverlay;
+    }
+
+    /**
+     * @return the fragment hosting the spread, null if the spread views are recycled without fragments
+     */
+    @Nullable
+    public VersoPageViewFragment getHost() {
+        return mHost;
+    }
+
+    // The fragment of the VersoTapInfo and VersoZoomPanInfo events, an unattached one without a host
+    private VersoPageViewFragment getEventFragment() {
+        if (mHost != null) {
+            return mHost;
+        }
+        if (mEventFragment == null) {
+            mEventFragment = VersoPageViewFragment.unattached(this);
+        }
+        return mEventFragment;
+    }
+
+    public int getSpreadPosition() {
+        return mPosition;
+    }
+
+    public int[] getPages() {
+        return Arrays.copyOf(mPages, mPages.length);
+    }
+
+    public void setVersoPageViewEventListener(VersoPageViewListener.EventListener l) {
+        mVersoPageViewEventListener = l;
+    }
+
+    public void setOnLoadCompleteListener(VersoPageViewListener.OnLoadCompleteListener listener) {
+        mOnLoadCompleteListener = listener;
+    }
+
+    public void setOffscreenPageLimitPolicy(OffscreenPageLimitPolicy policy) {
+        mOffscreenPageLimitPolicy = policy;
+    }
+
+    public void setSpreadViewPool(SpreadViewPool pool) {
+        mSpreadViewPool = pool;
+    }
+
+    public void dispatchZoom(float scale) {
+        int count = mPageContainer.getChildCount();
+        for (int i = 0; i < count; i++) {
+            final View v = mPageContainer.getChildAt(i);
+            if (v instanceof VersoPageView) {
+                ((VersoPageView)v).onZoom(scale);
+            }
+        }
+    }
+
+    public void dispatchViewportChanged() {
+        int count = mPageContainer.getChildCount();
+        for (int i = 0; i < count; i++) {
+            final View v = mPageContainer.getChildAt(i);
+            if (v instanceof VersoPageView) {
+                ((VersoPageView)v).onViewportChanged(mZoomLayout);
+            }
+        }
+    }
+
+    public boolean isScaled() {
+        return mZoomLayout != null && mZoomLayout.isScaled();
+    }
+
+    public boolean isScaling() {
+        return mZoomLayout != null && mZoomLayout.isScaling();
+    }
+
+    public boolean isTranslating() {
+        return mZoomLayout != null && mZoomLayout.isTranslating();
+    }
+
+    /**
+     * Add the pages of this spread that intersect the given bounds.
+     * @param parent The view the bounds are relative to, an ancestor of the spread view
+     * @param bounds The visible area, in the coordinates of parent
+     * @param result The set the visible pages are added to
+     */
+    public void getVisiblePages(View parent, Rect bounds, BitSet result) {
+        if (mZoomLayout == null) {
+            return;
+        }
+        int count = mPageContainer.getChildCount();
+        for (int i = 0; i < count; i++) {
+            VersoFragment.updateHitRect(mPageContainer.getChildAt(i), parent, mHitBounds);
+            if (Rect.intersects(bounds, mHitBounds)) {
+                result.set(mPages[i]);
+            }
+        }
+    }
+
+    void dispatchPageVisibilityChange(int[] added, int[] removed) {
+        if (mPageContainer == null) {
+            return;
+        }
+        for (int i = 0; i < mPageContainer.getChildCount(); i++) {
+            View v = mPageContainer.getChildAt(i);
+            int page = mPages[i];
+            if (v instanceof VersoPageView) {
+                VersoPageView pv = (VersoPageView) v;
+                for (int a : added) if (a == page) pv.onVisible();
+                for (int r : removed) if (r == page) pv.onInvisible();
+            }
+        }
+    }
+
+    // Measures the time the pages take to be shown, for the offscreen page limit
+    private class PageLoadTimer implements VersoPageViewListener.OnLoadCompleteListener {
+
+        @Override
+        public void onPageLoadComplete(boolean success, VersoPageView versoPageView) {
+            if (success && mOffscreenPageLimitPolicy != null) {
+                mOffscreenPageLimitPolicy.onPageLoaded(SystemClock.uptimeMillis() - mPageViewsAddedAt);
+            }
+            if (mOnLoadCompleteListener != null) {
+                mOnLoadCompleteListener.onPageLoadComplete(success, versoPageView);
+            }
+        }
+    }
+
+    private class OverlaySizer implements View.OnLayoutChangeListener {
+
+        @Override
+        public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
+            boolean changed = left != oldLeft || top != oldTop || right != oldRight || bottom != oldBottom;
+            if (changed && mSpreadOverlay != null) {
+                Rect r = getChildPosition();
+                FrameLayout.LayoutParams lp = (FrameLayout.LayoutParams) mSpreadOverlay.getLayoutParams();
+                lp.width = r.width();
+                lp.height = r.height();
+                lp.gravity = Gravity.CENTER;
+                mSpreadOverlay.setLayoutParams(lp);
+            }
+        }
+    }
+
+    private Rect getChildPosition() {
+        Rect rect = new Rect();
+        int childCount = mPageContainer.getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            final View child = mPageContainer.getChildAt(i);
+            if (i == 0) {
+                // First item, just set the rect
+                rect.set(child.getLeft(), child.getTop(), child.getRight(), child.getBottom());
+            } else {
+                if (rect.left > child.getLeft()) {
+                    rect.left = child.getLeft();
+                }
+                if (rect.top > child.getTop()) {
+                    rect.top = child.getTop();
+                }
+                if (rect.right < child.getRight()) {
+                    rect.right = child.getRight();
+                }
+                if (rect.bottom < child.getBottom()) {
+                    rect.bottom = child.getBottom();
+                }
+            }
+        }
+        return rect;
+    }
+
+    private Rect getZoomLayoutRect(ZoomLayout zl) {
+        RectF r = zl.getDrawRect();
+        return new Rect(Math.round(r.left), Math.round(r.top), Math.round(r.right), Math.round(r.bottom));
+    }
+
+    // Takes events from ZoomLayout, transform them into VersoPageViewEvent and propagate them
+    private class ZoomLayoutEventDispatcher implements EventListener {
+
+        private final EventListener mZoomDoubleTapListener = new ZoomOnDoubleTapListener(false);
+
+        @Override
+        public boolean onEvent(@NonNull Event event) {
+            if (mVersoPageViewEventListener == null)
+                return false;
+            if (event instanceof Event.Touch) {
+                Event.Touch e = (Event.Touch) event;
+                return mVersoPageViewEventListener.onVersoPageViewEvent(
+                        new VersoPageViewEvent.Touch(e.getAction(), new VersoTapInfo(e.getInfo(), getEventFragment()))
+                );
+            }
+            if (event instanceof Event.Tap) {
+                Event.Tap e = (Event.Tap) event;
+                return mVersoPageViewEventListener.onVersoPageViewEvent(
+                        new VersoPageViewEvent.Tap(new VersoTapInfo(e.getInfo(), getEventFragment()))
+                );
+            }
+            if (event instanceof Event.DoubleTap) {
+                Event.DoubleTap e = (Event.DoubleTap) event;
+                boolean consumed = mVersoPageViewEventListener.onVersoPageViewEvent(
+                        new VersoPageViewEvent.DoubleTap(new VersoTapInfo(e.getInfo(), getEventFragment())));
+                return !consumed && mZoomDoubleTapListener.onEvent(event);
+            }
+            if (event instanceof Event.LongTap) {
+                Event.LongTap e = (Event.LongTap) event;
+                return mVersoPageViewEventListener.onVersoPageViewEvent(
+                        new VersoPageViewEvent.LongTap(new VersoTapInfo(e.getInfo(), getEventFragment()))
+                );
+            }
+            if (event instanceof Event.ZoomBegin) {
+                Event.ZoomBegin e = (Event.ZoomBegin) event;
+                return mVersoPageViewEventListener.onVersoPageViewEvent(
+                        new VersoPageViewEvent.ZoomBegin(new VersoZoomPanInfo(getEventFragment(), e.getScale(), getZoomLayoutRect(e.getView())))
+                );
+            }
+            if (event instanceof Event.Zoom) {
+                Event.Zoom e = (Event.Zoom) event;
+                dispatchZoom(e.getScale());
+                dispatchViewportChanged();
+                return mVersoPageViewEventListener.onVersoPageViewEvent(
+                        new VersoPageViewEvent.Zoom(new VersoZoomPanInfo(getEventFragment(), e.getScale(), getZoomLayoutRect(e.getView())))
+                );
+            }
+            if (event instanceof Event.ZoomEnd) {
+                Event.ZoomEnd e = (Event.ZoomEnd) event;
+                dispatchViewportChanged();
+                return mVersoPageViewEventListener.onVersoPageViewEvent(
+                        new VersoPageViewEvent.ZoomEnd(new VersoZoomPanInfo(getEventFragment(), e.getScale(), getZoomLayoutRect(e.getView())))
+                );
+            }
+            if (event instanceof Event.PanBegin) {
+                Event.PanBegin e = (Event.PanBegin) event;
+                return mVersoPageViewEventListener.onVersoPageViewEvent(
+                        new VersoPageViewEvent.PanBegin(new VersoZoomPanInfo(getEventFragment(), e.getView().getScale(), getZoomLayoutRect(e.getView())))
+                );
+            }
+            if (event instanceof Event.Pan) {
+                Event.Pan e = (Event.Pan) event;
+                dispatchViewportChanged();
+                return mVersoPageViewEventListener.onVersoPageViewEvent(
+                        new VersoPageViewEvent.Pan(new VersoZoomPanInfo(getEventFragment(), e.getView().getScale(), getZoomLayoutRect(e.getView())))
+                );
+            }
+            if (event instanceof Event.PanEnd) {
+                Event.PanEnd e = (Event.PanEnd) event;
+                return mVersoPageViewEventListener.onVersoPageViewEvent(
+                        new VersoPageViewEvent.PanEnd(new VersoZoomPanInfo(getEventFragment(), e.getView().getScale(), getZoomLayoutRect(e.getView())))
+                );
+            }
+
+            return false;
+        }
+
+    }
+}
@@ -0,0 +1,47 @@
+package com.tjek.sdk.publicationviewer.paged.libs.verso;
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import androidx.annotation.Nullable;
+
+/**
+ * The adapters of the {@link VersoViewPager}: {@link VersoAdapter} hosts every spread in a fragment,
+ * {@link VersoViewAdapter} adds the spread views to the pager directly.
+ * Both are {@link androidx.viewpager.widget.PagerAdapter}s.
+ */
+public interface VersoSpreadAdapter {
+
+    int getCount();
+
+    /**
+     * @param position A spread position
+     * @return The spread, or null if the pager doesn't have it (or its view) at the moment
+     */
+    @Nullable
+    VersoSpread getSpread(int position);
+
+    void setEventListener(VersoPageViewListener.EventListener listener);
+
+    void setOnLoadCompleteListener(VersoPageViewListener.OnLoadCompleteListener listener);
+
+    void setOffscreenPageLimitPolicy(OffscreenPageLimitPolicy policy);
+
+    /**
+     * Remove every spread, the pager creates them again when the adapter is set.
+     */
+    void clearState();
+
+    void notifyDataSetChanged();
+}
@@ -26,6 +26,8 @@ data class VersoTapInfo(
     val fragment: VersoPageViewFragment
 ) {
 
+    // The fragment isn't added to the pager with the VersoViewAdapter, the spread holds the views
+    val spread: VersoSpread = fragment.spread
     val position: Int = fragment.mPosition
     val pages: IntArray = Arrays.copyOf(fragment.mPages, fragment.mPages.size)
     val pageTapped: Int
@@ -0,0 +1,130 @@
+package com.tjek.sdk.publicationviewer.paged.libs.verso;
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.viewpager.widget.PagerAdapter;
+
+/**
+ * Adds the spread views to the {@link VersoViewPager} directly, without a fragment per spread:
+ * a swipe doesn't run any fragment transaction or lifecycle, it moves a {@link VersoSpread} out of the pager
+ * and binds its views, from the {@link SpreadViewPool}, to the next spread.
+ */
+public class VersoViewAdapter extends PagerAdapter implements VersoSpreadAdapter {
+
+    public static final String TAG = VersoViewAdapter.class.getSimpleName();
+
+    private final VersoSpreadConfiguration mConfiguration;
+    private final SpreadViewPool mSpreadViewPool;
+    private final SparseArray<VersoSpread> mSpreads = new SparseArray<>();
+    private VersoPageViewListener.EventListener mEventListener;
+    private VersoPageViewListener.OnLoadCompleteListener mOnLoadCompleteListener;
+    private OffscreenPageLimitPolicy mOffscreenPageLimitPolicy;
+
+    public VersoViewAdapter(VersoSpreadConfiguration configuration, SpreadViewPool pool) {
+        mConfiguration = configuration;
+        mSpreadViewPool = pool;
+    }
+
+    @NonNull
+    @Override
+    public Object instantiateItem(@NonNull ViewGroup container, int position) {
+        VersoSpread spread = new VersoSpread(mConfiguration, position, null);
+        spread.setVersoPageViewEventListener(mEventListener);
+        spread.setOnLoadCompleteListener(mOnLoadCompleteListener);
+        spread.setOffscreenPageLimitPolicy(mOffscreenPageLimitPolicy);
+        spread.setSpreadViewPool(mSpreadViewPool);
+        View view = spread.createView(LayoutInflater.from(container.getContext()), container);
+        container.addView(view);
+        spread.addPageViews();
+        mSpreads.put(position, spread);
+        return spread;
+    }
+
+    @Override
+    public void destroyItem(@Nullable ViewGroup container, int position, @NonNull Object object) {
+        VersoSpread spread = (VersoSpread) object;
+        if (mSpreads.get(position) == spread) {
+            mSpreads.remove(position);
+        }
+        if (!spread.hasView()) {
+            return;
+        }
+        View view = spread.getZoomLayout();
+        spread.removePageViews();
+        if (view.getParent() instanceof ViewGroup) {
+            ((ViewGroup) view.getParent()).removeView(view);
+        }
+        spread.destroyView();
+    }
+
+    @Override
+    public boolean isViewFromObject(@NonNull View view, @NonNull Object object) {
+        VersoSpread spread = (VersoSpread) object;
+        return spread.hasView() && spread.getZoomLayout() == view;
+    }
+
+    @Override
+    public int getItemPosition(@NonNull Object object) {
+        // The spreads depend on the configuration (e.g. orientation), create them again on every change
+        return POSITION_NONE;
+    }
+
+    @Override
+    public int getCount() {
+        return mConfiguration.getSpreadCount();
+    }
+
+    @Override
+    public float getPageWidth(int position) {
+        return mConfiguration.getSpreadProperty(position).getWidth();
+    }
+
+    @Nullable
+    @Override
+    public VersoSpread getSpread(int position) {
+        return mSpreads.get(position);
+    }
+
+    @Override
+    public void clearState() {
+        for (int i = mSpreads.size() - 1; i >= 0; i--) {
+            destroyItem(null, mSpreads.keyAt(i), mSpreads.valueAt(i));
+        }
+        mSpreads.clear();
+    }
+
+    @Override
+    public void setEventListener(VersoPageViewListener.EventListener listener) {
+        mEventListener = listener;
+    }
+
+    @Override
+    public void setOnLoadCompleteListener(VersoPageViewListener.OnLoadCompleteListener listener) {
+        mOnLoadCompleteListener = listener;
+    }
+
+    @Override
+    public void setOffscreenPageLimitPolicy(OffscreenPageLimitPolicy policy) {
+        mOffscreenPageLimitPolicy = policy;
+    }
+
+}
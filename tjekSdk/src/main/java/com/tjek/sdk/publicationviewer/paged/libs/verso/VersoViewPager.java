@@ -38,14 +38,19 @@ public class VersoViewPager extends LazyCenteredViewPager {
 
     @Override
     public void setAdapter(PagerAdapter adapter) {
-        if (adapter != null && !(adapter instanceof VersoAdapter)) {
-            throw new UnsupportedOperationException("The adapter must be an instance of VersoAdapter.");
+        if (adapter != null && !(adapter instanceof VersoSpreadAdapter)) {
+            throw new UnsupportedOperationException("The adapter must be an instance of VersoSpreadAdapter.");
         }
         super.setAdapter(adapter);
     }
 
     public VersoAdapter getVersoAdapter() {
-        return (VersoAdapter) getAdapter();
+        PagerAdapter adapter = getAdapter();
+        return adapter instanceof VersoAdapter ? (VersoAdapter) adapter : null;
+    }
+
+    public VersoSpreadAdapter getSpreadAdapter() {
+        return (VersoSpreadAdapter) getAdapter();
     }
 
     @Override
@@ -25,6 +25,8 @@ import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.os.SystemClock;
@@ -66,6 +68,8 @@ import android.view.accessibility.AccessibilityEvent;
 import android.view.animation.Interpolator;
 import android.widget.Scroller;
 
+import com.tjek.sdk.publicationviewer.paged.libs.verso.FrameTimingRecorder;
+
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Inherited;
 import java.lang.annotation.Retention;
@@ -196,6 +200,26 @@ public class CenteredViewPager extends ViewGroup {
    private boolean mPopulatePending;
    private int mOffscreenPageLimit = DEFAULT_OFFSCREEN_PAGES;
 
+   // populate() creates new pages only within this distance from the current one. The pages up to
+   // mOffscreenPageLimit are created one step at the time from an idle handler once the scroll is idle,
+   // so creating them never costs a frame of a swipe. Existing pages are kept up to mOffscreenPageLimit.
+   private int mCreatedOffscreenPages = DEFAULT_OFFSCREEN_PAGES;
+   private boolean mIdlePopulateScheduled;
+   private FrameTimingRecorder mFrameTimingRecorder;
+   private final MessageQueue.IdleHandler mIdlePopulate = new MessageQueue.IdleHandler() {
+      @Override
+      public boolean queueIdle() {
+         if (mScrollState != SCROLL_STATE_IDLE || mCreatedOffscreenPages >= mOffscreenPageLimit) {
+            mIdlePopulateScheduled = false;
+            return false;
+         }
+         mCreatedOffscreenPages++;
+         populate();
+         mIdlePopulateScheduled = mCreatedOffscreenPages < mOffscreenPageLimit;
+         return mIdlePopulateScheduled;
+      }
+   };
+
    private boolean mIsBeingDragged;
    private boolean mIsUnableToDrag;
    private int mDefaultGutterSize;
@@ -483,6 +507,10 @@ public class CenteredViewPager extends ViewGroup {
    @Override
    protected void onDetachedFromWindow() {
       removeCallbacks(mEndScrollRunnable);
+      if (mIdlePopulateScheduled) {
+         Looper.myQueue().removeIdleHandler(mIdlePopulate);
+         mIdlePopulateScheduled = false;
+      }
       // To be on the safe side, abort the scroller
       if ((mScroller != null) && !mScroller.isFinished()) {
          mScroller.abortAnimation();
@@ -496,6 +524,11 @@ public class CenteredViewPager extends ViewGroup {
       }
 
       mScrollState = newState;
+      if (newState == SCROLL_STATE_IDLE) {
+         scheduleIdlePopulate();
+      } else {
+         mCreatedOffscreenPages = Math.min(mCreatedOffscreenPages, DEFAULT_OFFSCREEN_PAGES);
+      }
       if (mPageTransformer != null) {
          // PageTransformers can do complex things that benefit from hardware layers.
          enableLayers(newState != SCROLL_STATE_IDLE);
@@ -884,10 +917,20 @@ public class CenteredViewPager extends ViewGroup {
       }
       if (limit != mOffscreenPageLimit) {
          mOffscreenPageLimit = limit;
+         mCreatedOffscreenPages = Math.min(mCreatedOffscreenPages, limit);
          populate();
       }
    }
 
+   /**
+    * Measure the time spent populating the pages.
+    *
+    * @param recorder The recorder, or null to stop measuring
+    */
+   public void setFrameTimingRecorder(@Nullable FrameTimingRecorder recorder) {
+      mFrameTimingRecorder = recorder;
+   }
+
    /**
     * Set the margin between pages.
     *
@@ -1123,7 +1166,25 @@ public class CenteredViewPager extends ViewGroup {
       populate(mCurItem);
    }
 
+   private void scheduleIdlePopulate() {
+      if (!mIdlePopulateScheduled && mScrollState == SCROLL_STATE_IDLE
+              && mCreatedOffscreenPages < mOffscreenPageLimit && getWindowToken() != null) {
+         mIdlePopulateScheduled = true;
+         Looper.myQueue().addIdleHandler(mIdlePopulate);
+      }
+   }
+
    void populate(int newCurrentItem) {
+      if (mFrameTimingRecorder == null) {
+         populateItems(newCurrentItem);
+         return;
+      }
+      long start = mFrameTimingRecorder.beginPhase();
+      populateItems(newCurrentItem);
+      mFrameTimingRecorder.endPhase(FrameTimingRecorder.PHASE_POPULATE, start);
+   }
+
+   private void populateItems(int newCurrentItem) {
       ItemInfo oldCurInfo = null;
       if (mCurItem != newCurrentItem) {
          oldCurInfo = infoForPosition(mCurItem);
@@ -1158,6 +1219,9 @@ public class CenteredViewPager extends ViewGroup {
       final int startPos = Math.max(0, mCurItem - pageLimit);
       final int N = mAdapter.getCount();
       final int endPos = Math.min(N - 1, mCurItem + pageLimit);
+      final int createLimit = Math.min(pageLimit, mCreatedOffscreenPages);
+      final int createStartPos = Math.max(0, mCurItem - createLimit);
+      final int createEndPos = Math.min(N - 1, mCurItem + createLimit);
 
       if (N != mExpectedAdapterCount) {
          String resName;
@@ -1219,6 +1283,9 @@ public class CenteredViewPager extends ViewGroup {
                extraWidthLeft += ii.widthFactor;
                itemIndex--;
                ii = itemIndex >= 0 ? mItems.get(itemIndex) : null;
+            } else if (extraWidthLeft >= leftWidthNeeded && pos < createStartPos) {
+               // not needed to fill the screen, it'll be created when the scroll is idle
+               scheduleIdlePopulate();
             } else {
                ii = addNewItem(pos, itemIndex + 1);
                extraWidthLeft += ii.widthFactor;
@@ -1251,6 +1318,9 @@ public class CenteredViewPager extends ViewGroup {
                   extraWidthRight += ii.widthFactor;
                   itemIndex++;
                   ii = itemIndex < mItems.size() ? mItems.get(itemIndex) : null;
+               } else if (extraWidthRight >= rightWidthNeeded && pos > createEndPos) {
+                  // not needed to fill the screen, it'll be created when the scroll is idle
+                  scheduleIdlePopulate();
                } else {
                   ii = addNewItem(pos, itemIndex);
                   itemIndex++;
@@ -59,6 +59,9 @@ public class ZoomLayout extends FrameLayout {
     private final Matrix scaleMatrixInverse = new Matrix();
     private final Matrix translateMatrix = new Matrix();
     private final Matrix translateMatrixInverse = new Matrix();
+    // The inverse matrices are only needed to map touch events, they're computed when used
+    private boolean inverseMatricesDirty = false;
+    private final RectF translateDeltaBounds = new RectF();
 
     // helper array to save heap
     private final float[] matrixValues = new float[9];
@@ -94,6 +97,8 @@ public class ZoomLayout extends FrameLayout {
     // Listeners
     private List<EventListener> eventListeners;
 
+    private boolean globalLayoutListenerRemoved = false;
+
     // Counters for certain events
     private int zoomEventCounter = 0;
     private int panEventCounter = 0;
@@ -127,12 +132,42 @@ public class ZoomLayout extends FrameLayout {
         getViewTreeObserver().addOnGlobalLayoutListener(simpleOnGlobalLayoutChangedListener);
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        // The layout has been recycled, the listener was removed when it was detached
+        if (globalLayoutListenerRemoved) {
+            getViewTreeObserver().addOnGlobalLayoutListener(simpleOnGlobalLayoutChangedListener);
+            globalLayoutListenerRemoved = false;
+        }
+    }
+
     @Override
     protected void onDetachedFromWindow() {
         ZoomLayout.removeGlobal(this, simpleOnGlobalLayoutChangedListener);
+        globalLayoutListenerRemoved = true;
         super.onDetachedFromWindow();
     }
 
+    /**
+     * Bring the layout back to no scale and no translation, removing all the event listeners.
+     * Used when the layout is recycled for another spread.
+     */
+    public void reset() {
+        clearEventListener();
+        cancelFling();
+        cancelZoom();
+        zoomEventCounter = 0;
+        panEventCounter = 0;
+        focusX = 0;
+        focusY = 0;
+        scaleMatrix.reset();
+        translateMatrix.reset();
+        matrixUpdated();
+        requestLayout();
+        invalidate();
+    }
+
     public static void removeGlobal(View v, ViewTreeObserver.OnGlobalLayoutListener listener) {
         ViewTreeObserver obs = v.getViewTreeObserver();
         obs.removeOnGlobalLayoutListener(listener);
@@ -152,6 +187,7 @@ public class ZoomLayout extends FrameLayout {
             // StackOverflowError when drawing childViews
         }
         if (DEBUG) {
+            updateInverseMatrices();
             ZoomUtils.debugDraw(canvas, getContext(), getPosX(), getPosY(), focusX, focusY, getMatrixValue(scaleMatrixInverse, Matrix.MSCALE_X));
         }
         canvas.restore();
@@ -189,6 +225,7 @@ public class ZoomLayout extends FrameLayout {
     }
 
     void screenPointsToScaledPoints(float[] a){
+        updateInverseMatrices();
         translateMatrixInverse.mapPoints(a);
         scaleMatrixInverse.mapPoints(a);
     }
@@ -398,6 +435,32 @@ public class ZoomLayout extends FrameLayout {
         return new RectF(drawRect);
     }
 
+    /**
+     * Get the part of a descendant view that is currently visible in the viewport.
+     * @param descendant A view inside the content of this ZoomLayout
+     * @param out The visible rectangle in the coordinates of the descendant (unscaled), empty if not visible
+     */
+    public void getVisibleRect(View descendant, RectF out) {
+        // The viewport in content coordinates
+        array[0] = 0;
+        array[1] = 0;
+        array[2] = getWidth();
+        array[3] = getHeight();
+        screenPointsToScaledPoints(array);
+        out.set(array[0], array[1], array[2], array[3]);
+
+        // Move it to the descendant coordinates
+        View v = descendant;
+        while (v != null && v != this) {
+            out.offset(-v.getLeft(), -v.getTop());
+            ViewParent parent = v.getParent();
+            v = parent instanceof View ? (View) parent : null;
+        }
+        if (v == null || !out.intersect(0, 0, descendant.getWidth(), descendant.getHeight())) {
+            out.setEmpty();
+        }
+    }
+
     public boolean isAllowOverScale() {
         return allowOverScale;
     }
@@ -547,7 +610,8 @@ public class ZoomLayout extends FrameLayout {
     }
 
     private RectF getTranslateDeltaBounds() {
-        RectF r = new RectF();
+        RectF r = translateDeltaBounds;
+        r.setEmpty();
         float maxDeltaX = drawRect.width() - viewPortRect.width();
         if (maxDeltaX < 0) {
             float leftEdge = Math.round((viewPortRect.width() - drawRect.width()) / 2);
@@ -609,7 +673,7 @@ public class ZoomLayout extends FrameLayout {
         this.focusY = focusY;
         scaleMatrix.setScale(scale, scale, this.focusX, this.focusY);
         matrixUpdated();
-        requestLayout();
+        // The scale is applied to the canvas in dispatchDraw, the children don't need a new layout
         invalidate();
     }
 
@@ -617,9 +681,7 @@ public class ZoomLayout extends FrameLayout {
      * Update all variables that rely on the Matrices.
      */
     private void matrixUpdated() {
-        // First inverse matrices
-        scaleMatrix.invert(scaleMatrixInverse);
-        translateMatrix.invert(translateMatrixInverse);
+        inverseMatricesDirty = true;
         // Update DrawRect - maybe this should be viewPort.left instead of 0?
         ZoomUtils.setRect(viewPortRect, 0, 0, getWidth(), getHeight());
 
@@ -635,6 +697,14 @@ public class ZoomLayout extends FrameLayout {
         }
     }
 
+    private void updateInverseMatrices() {
+        if (inverseMatricesDirty) {
+            scaleMatrix.invert(scaleMatrixInverse);
+            translateMatrix.invert(translateMatrixInverse);
+            inverseMatricesDirty = false;
+        }
+    }
+
     /**
      * Get the current x-translation
      */
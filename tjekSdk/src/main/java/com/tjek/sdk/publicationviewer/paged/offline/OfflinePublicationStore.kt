@@ -0,0 +1,165 @@
+package com.tjek.sdk.publicationviewer.paged.offline
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.content.Context
+import com.squareup.moshi.JsonAdapter
+import com.squareup.moshi.Types
+import com.tjek.sdk.TjekLogCat
+import com.tjek.sdk.api.Id
+import com.tjek.sdk.api.models.*
+import com.tjek.sdk.api.remote.APIClient
+import com.tjek.sdk.api.remote.request.APIRequest
+import okio.buffer
+import okio.sink
+import okio.source
+import java.io.File
+import java.io.IOException
+
+internal enum class PageImageKind(val fileSuffix: String) {
+    View("view"), Zoom("zoom"), Thumb("thumb")
+}
+
+internal class OfflinePublication(
+    val publication: PublicationV2,
+    val pages: List<PublicationPageV2>,
+    val hotspots: List<PublicationHotspotV2>
+)
+
+/**
+ * On-disk store of the offline publications. Each publication has its own folder with:
+ * - the api responses for the publication, pages and hotspots, stored as they are
+ * - the page images
+ * - an empty marker file, written when everything has been downloaded
+ *
+ * Every file is written to a temporary file and then renamed, so a file that exists is always complete
+ * and an interrupted download can be resumed skipping the files already there.
+ */
+internal object OfflinePublicationStore {
+
+    private const val ROOT_FOLDER = "tjek_sdk_offline_publications"
+    private const val IMAGES_FOLDER = "images"
+    private const val PUBLICATION_FILE = "publication.json"
+    private const val PAGES_FILE = "pages.json"
+    private const val HOTSPOTS_FILE = "hotspots.json"
+    private const val COMPLETE_FILE = "complete"
+    private const val TMP_SUFFIX = ".tmp"
+
+    private var root: File? = null
+
+    val publicationAdapter: JsonAdapter<PublicationV2Decodable> by lazy {
+        APIClient.moshi.adapter(PublicationV2Decodable::class.java)
+    }
+    val pagesAdapter: JsonAdapter<List<ImageUrlsV2>> by lazy {
+        APIClient.moshi.adapter(Types.newParameterizedType(List::class.java, ImageUrlsV2::class.java))
+    }
+    val hotspotsAdapter: JsonAdapter<List<PublicationHotspotV2Decodable>> by lazy {
+        APIClient.moshi.adapter(Types.newParameterizedType(List::class.java, PublicationHotspotV2Decodable::class.java))
+    }
+
+    fun initialize(context: Context) {
+        root = File(context.filesDir, ROOT_FOLDER)
+    }
+
+    private fun publicationFolder(publicationId: Id): File? {
+        return root?.let { File(it, publicationId) }
+    }
+
+    fun publicationFile(publicationId: Id) = publicationFolder(publicationId)?.let { File(it, PUBLICATION_FILE) }
+    fun pagesFile(publicationId: Id) = publicationFolder(publicationId)?.let { File(it, PAGES_FILE) }
+    fun hotspotsFile(publicationId: Id) = publicationFolder(publicationId)?.let { File(it, HOTSPOTS_FILE) }
+
+    fun imageFile(publicationId: Id, pageIndex: Int, kind: PageImageKind): File? {
+        return publicationFolder(publicationId)?.let { File(File(it, IMAGES_FOLDER), "${pageIndex}_${kind.fileSuffix}") }
+    }
+
+    fun isComplete(publicationId: Id): Boolean {
+        return publicationFolder(publicationId)?.let { File(it, COMPLETE_FILE).exists() } ?: false
+    }
+
+    fun markComplete(publicationId: Id) {
+        publicationFolder(publicationId)?.let { File(it, COMPLETE_FILE).createNewFile() }
+    }
+
+    fun getCompletePublicationIds(): List<Id> {
+        return root?.listFiles()
+            ?.filter { File(it, COMPLETE_FILE).exists() }
+            ?.map { it.name }
+            ?: emptyList()
+    }
+
+    fun delete(publicationId: Id) {
+        publicationFolder(publicationId)?.deleteRecursively()
+    }
+
+    // Writes to a temporary file and renames it when done
+    fun writeAtomically(file: File, write: (File) -> Unit) {
+        file.parentFile?.mkdirs()
+        val tmp = File(file.path + TMP_SUFFIX)
+        try {
+            write(tmp)
+            if (!tmp.renameTo(file)) throw IOException("Can't rename ${tmp.path}")
+        } finally {
+            tmp.delete()
+        }
+    }
+
+    fun <T> writeJson(file: File, adapter: JsonAdapter<T>, value: T) {
+        writeAtomically(file) { tmp ->
+            tmp.sink().buffer().use { adapter.toJson(it, value) }
+        }
+    }
+
+    fun <T> readJson(file: File?, adapter: JsonAdapter<T>): T? {
+        if (file == null || !file.exists()) return null
+        return file.source().buffer().use { adapter.fromJson(it) }
+    }
+
+    /**
+     * Read a downloaded publication, with the page images pointing to the local files.
+     * Returns null if the publication hasn't been completely downloaded.
+     */
+    fun load(publicationId: Id): OfflinePublication? {
+        if (!isComplete(publicationId)) return null
+        return try {
+            val publication = readJson(publicationFile(publicationId), publicationAdapter)
+                ?.let { PublicationV2.fromDecodable(it) } ?: return null
+            val images = readJson(pagesFile(publicationId), pagesAdapter) ?: return null
+            val hotspots = readJson(hotspotsFile(publicationId), hotspotsAdapter) ?: emptyList()
+            OfflinePublication(
+                publication = publication,
+                pages = APIRequest.decodePublicationPages(
+                    images.mapIndexed { index, urls -> localImageUrls(publicationId, index, urls) },
+                    publication.aspectRatio
+                ),
+                hotspots = APIRequest.decodePublicationHotspots(hotspots, publication.width, publication.height)
+            )
+        } catch (e: Exception) {
+            TjekLogCat.e("Offline publication $publicationId can't be read: ${e.message}")
+            null
+        }
+    }
+
+    // The zoom image is optional, so if it wasn't downloaded we keep the remote url
+    private fun localImageUrls(publicationId: Id, pageIndex: Int, remote: ImageUrlsV2): ImageUrlsV2 {
+        fun local(kind: PageImageKind) = imageFile(publicationId, pageIndex, kind)?.takeIf { it.exists() }?.absolutePath
+        val view = local(PageImageKind.View) ?: remote.view
+        return ImageUrlsV2(
+            view = view,
+            zoom = local(PageImageKind.Zoom) ?: remote.zoom,
+            thumb = local(PageImageKind.Thumb) ?: view
+        )
+    }
+}
@@ -0,0 +1,208 @@
+package com.tjek.sdk.publicationviewer.paged.offline
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import com.tjek.sdk.TjekLogCat
+import com.tjek.sdk.api.Id
+import com.tjek.sdk.api.models.ImageUrlsV2
+import com.tjek.sdk.api.models.PublicationV2
+import com.tjek.sdk.api.remote.ResponseType
+import com.tjek.sdk.api.remote.request.APIRequest
+import kotlinx.coroutines.*
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import okhttp3.Call
+import okhttp3.Callback
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import okio.buffer
+import okio.sink
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+data class OfflineDownloadProgress(
+    val publicationId: Id,
+    // Files (page images) already in the store
+    val downloadedFiles: Int,
+    // Files needed to read the publication offline
+    val totalFiles: Int
+)
+
+/**
+ * Download paged publications to read them without network.
+ *
+ * A downloaded publication is read by the PagedPublicationFragment instead of calling the api,
+ * so there's nothing else to do to show it offline.
+ */
+object OfflinePublications {
+
+    private val downloading = HashSet<Id>()
+    private val httpClient: OkHttpClient by lazy { OkHttpClient() }
+
+    /**
+    Download a publication: its data, pages, hotspots and the page images.
+    If a previous download of the same publication was interrupted, only the missing files are downloaded.
+
+    Parameters:
+        - publicationId: the id of the publication
+        - includeZoomImages: download the high resolution images too. They are used when the page is zoomed but they are much bigger.
+        - maxParallelDownloads: how many images are downloaded at the same time
+        - onProgress: called (on a background thread) every time an image has been downloaded
+
+    Returns:
+        The downloaded `PublicationV2` or an error. In case of error, call it again to resume the download.
+     */
+    suspend fun download(
+        publicationId: Id,
+        includeZoomImages: Boolean = false,
+        maxParallelDownloads: Int = 4,
+        onProgress: ((OfflineDownloadProgress) -> Unit)? = null
+    ): ResponseType<PublicationV2> = withContext(Dispatchers.IO) {
+        synchronized(downloading) {
+            if (!downloading.add(publicationId)) {
+                return@withContext ResponseType.Error(message = "Publication $publicationId is already being downloaded")
+            }
+        }
+        try {
+            downloadPublication(publicationId, includeZoomImages, maxParallelDownloads.coerceAtLeast(1), onProgress)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            // e.g. no space left on the device
+            ResponseType.Error(message = e.message, exception = e)
+        } finally {
+            synchronized(downloading) { downloading.remove(publicationId) }
+        }
+    }
+
+    // True if the publication has been completely downloaded
+    fun isDownloaded(publicationId: Id): Boolean {
+        return OfflinePublicationStore.isComplete(publicationId)
+    }
+
+    // The ids of the publications completely downloaded
+    fun getDownloadedPublicationIds(): List<Id> {
+        return OfflinePublicationStore.getCompletePublicationIds()
+    }
+
+    // Remove a publication from the store, it'll be read from the network again
+    suspend fun delete(publicationId: Id) = withContext(Dispatchers.IO) {
+        OfflinePublicationStore.delete(publicationId)
+    }
+
+    private suspend fun downloadPublication(
+        publicationId: Id,
+        includeZoomImages: Boolean,
+        maxParallelDownloads: Int,
+        onProgress: ((OfflineDownloadProgress) -> Unit)?
+    ): ResponseType<PublicationV2> {
+        val store = OfflinePublicationStore
+        val publicationFile = store.publicationFile(publicationId)
+        val pagesFile = store.pagesFile(publicationId)
+        val hotspotsFile = store.hotspotsFile(publicationId)
+        if (publicationFile == null || pagesFile == null || hotspotsFile == null) {
+            return ResponseType.Error(message = "The sdk hasn't been initialized")
+        }
+
+        // The data is reused if it's already in the store, so the images match the stored pages
+        val publication = store.readJson(publicationFile, store.publicationAdapter)
+            ?: when (val res = APIRequest.getPublicationDecodable(publicationId)) {
+                is ResponseType.Error -> return res
+                is ResponseType.Success -> res.data.also { store.writeJson(publicationFile, store.publicationAdapter, it) }
+            }
+        val pages = store.readJson(pagesFile, store.pagesAdapter)
+            ?: when (val res = APIRequest.getPublicationPageImages(publicationId)) {
+                is ResponseType.Error -> return res
+                is ResponseType.Success -> res.data.also { store.writeJson(pagesFile, store.pagesAdapter, it) }
+            }
+        if (store.readJson(hotspotsFile, store.hotspotsAdapter) == null) {
+            when (val res = APIRequest.getPublicationHotspotsDecodable(publicationId)) {
+                is ResponseType.Error -> return res
+                is ResponseType.Success -> store.writeJson(hotspotsFile, store.hotspotsAdapter, res.data)
+            }
+        }
+
+        val files = imagesToDownload(publicationId, pages, includeZoomImages)
+        val downloaded = AtomicInteger(files.count { it.second.exists() })
+        onProgress?.invoke(OfflineDownloadProgress(publicationId, downloaded.get(), files.size))
+
+        val failures = AtomicInteger(0)
+        val semaphore = Semaphore(maxParallelDownloads)
+        coroutineScope {
+            files.filter { !it.second.exists() }.map { (url, file) ->
+                launch {
+                    semaphore.withPermit {
+                        try {
+                            downloadFile(url, file)
+                            onProgress?.invoke(OfflineDownloadProgress(publicationId, downloaded.incrementAndGet(), files.size))
+                        } catch (e: IOException) {
+                            TjekLogCat.w("Offline image download failed for $url: ${e.message}")
+                            failures.incrementAndGet()
+                        }
+                    }
+                }
+            }.joinAll()
+        }
+
+        if (failures.get() > 0) {
+            return ResponseType.Error(message = "${failures.get()} of ${files.size} images couldn't be downloaded")
+        }
+        store.markComplete(publicationId)
+        return ResponseType.Success(PublicationV2.fromDecodable(publication))
+    }
+
+    private fun imagesToDownload(publicationId: Id, pages: List<ImageUrlsV2>, includeZoomImages: Boolean): List<Pair<String, File>> {
+        val files = ArrayList<Pair<String, File>>()
+        pages.forEachIndexed { index, urls ->
+            fun add(url: String?, kind: PageImageKind) {
+                val file = OfflinePublicationStore.imageFile(publicationId, index, kind)
+                if (!url.isNullOrEmpty() && file != null) files.add(url to file)
+            }
+            add(urls.view, PageImageKind.View)
+            add(urls.thumb, PageImageKind.Thumb)
+            if (includeZoomImages) add(urls.zoom, PageImageKind.Zoom)
+        }
+        return files
+    }
+
+    private suspend fun downloadFile(url: String, file: File) {
+        val response = httpClient.newCall(Request.Builder().url(url).build()).await()
+        response.use {
+            if (!it.isSuccessful) throw IOException("HTTP ${it.code}")
+            val body = it.body ?: throw IOException("Empty body")
+            OfflinePublicationStore.writeAtomically(file) { tmp ->
+                tmp.sink().buffer().use { sink -> sink.writeAll(body.source()) }
+            }
+        }
+    }
+
+    // Cancelling the coroutine cancels the call
+    private suspend fun Call.await(): Response = suspendCancellableCoroutine { continuation ->
+        continuation.invokeOnCancellation { cancel() }
+        enqueue(object : Callback {
+            override fun onResponse(call: Call, response: Response) {
+                continuation.resume(response)
+            }
+
+            override fun onFailure(call: Call, e: IOException) {
+                if (!continuation.isCancelled) continuation.resumeWithException(e)
+            }
+        })
+    }
+}
@@ -15,19 +15,20 @@ package com.tjek.sdk.publicationviewer.paged.views
  * limitations under the License.
  */
 import android.content.Context
+import android.graphics.RectF
 import android.view.animation.AnimationUtils
 import com.tjek.sdk.R
 import com.tjek.sdk.api.models.PublicationHotspotV2
 
-class HotspotLongPressView(
-    context: Context?,
-    hotspot: PublicationHotspotV2?,
-    pages: IntArray?
-) : HotspotView(context, hotspot, pages, true) {
+class HotspotLongPressView : HotspotView {
+
+    constructor(context: Context?, hotspot: PublicationHotspotV2?, pages: IntArray?) : super(context, hotspot, pages, true)
+
+    constructor(context: Context?, bounds: RectF?) : super(context, bounds, true)
 
     init {
         setBackgroundResource(R.drawable.tjek_sdk_pagedpub_hotspot_long_press_bg)
-        animation = AnimationUtils.loadAnimation(getContext(), R.anim.tjek_sdk_pagedpub_hotspot_in_long_press_highlight_view)
+        setInAnimation(AnimationUtils.loadAnimation(getContext(), R.anim.tjek_sdk_pagedpub_hotspot_in_long_press_highlight_view))
     }
 
     override fun onAnimationEnd() {
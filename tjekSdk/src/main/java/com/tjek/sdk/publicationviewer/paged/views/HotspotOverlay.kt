@@ -40,10 +40,18 @@ class HotspotOverlay(
 
     private lateinit var drawer: HoleDrawer
     private var bgColor: Int = ResourcesCompat.getColor(resources, R.color.tjek_pagedpub_hotspot_dimmed_bg, null)
+    private val holeRect = Rect()
+    private val inAnimation = AnimationUtils.loadAnimation(context, if (longPress) R.anim.tjek_sdk_pagedpub_hotspot_in_long_press else R.anim.tjek_sdk_pagedpub_hotspot_in)
 
     init {
         setWillNotDraw(false)
-        animation = AnimationUtils.loadAnimation(context, if (longPress) R.anim.tjek_sdk_pagedpub_hotspot_in_long_press else R.anim.tjek_sdk_pagedpub_hotspot_in)
+        animation = inAnimation
+    }
+
+    // The animation is loaded only once, so it's reused when the overlay is recycled
+    fun startInAnimation() {
+        visibility = VISIBLE
+        startAnimation(inAnimation)
     }
 
     private fun setHoles(holes: List<HoleType>) {
@@ -56,16 +64,14 @@ class HotspotOverlay(
         viewToHighlight.forEach {
             when(it.holeType) {
                 is HoleType.Rectangle -> {
-                    val r = Rect()
-                    it.targetView.getDrawingRect(r)
-                    (parent as PublicationSpreadLayout).offsetDescendantRectToMyCoords(it.targetView, r)
-                    it.holeType.rectF.set(r)
+                    it.targetView.getDrawingRect(holeRect)
+                    (parent as PublicationSpreadLayout).offsetDescendantRectToMyCoords(it.targetView, holeRect)
+                    it.holeType.rectF.set(holeRect)
                 }
                 is HoleType.RoundRectangle -> {
-                    val r = Rect()
-                    it.targetView.getDrawingRect(r)
-                    (parent as PublicationSpreadLayout).offsetDescendantRectToMyCoords(it.targetView, r)
-                    it.holeType.rectF.set(r)
+                    it.targetView.getDrawingRect(holeRect)
+                    (parent as PublicationSpreadLayout).offsetDescendantRectToMyCoords(it.targetView, holeRect)
+                    it.holeType.rectF.set(holeRect)
                 }
             }
         }
@@ -79,8 +85,15 @@ class HotspotOverlay(
         }
     }
 
+    override fun onAnimationStart() {
+        super.onAnimationStart()
+        // The geometry doesn't change while animating, so the frames only need to compose the layer with a new alpha
+        setLayerType(LAYER_TYPE_HARDWARE, null)
+    }
+
     override fun onAnimationEnd() {
         super.onAnimationEnd()
+        setLayerType(LAYER_TYPE_NONE, null)
         if (!longPress) {
             visibility = GONE
             // this view is added to the parent only once, so at the end of the animation,
@@ -92,23 +105,34 @@ class HotspotOverlay(
 
 }
 
+// The holes are merged once, when the drawer is created, and the path is rebuilt only if the size changes
 class HoleDrawer(private val bgColor: Int, private val holes: List<HoleType>) {
 
     private val path = Path()
+    private val hotspotPath = Path()
+    private var pathWidth = -1
+    private var pathHeight = -1
     private val paint = Paint(Paint.ANTI_ALIAS_FLAG).apply {
         style = Paint.Style.FILL
         color = bgColor
     }
 
-    private fun preparePath(screenWidth: Int, screenHeight: Int) {
+    init {
         // Merge the hotspots together to correctly highlight overlapping areas
-        val hotspotPath = Path()
+        val holePath = Path()
         holes.forEach {
+            holePath.reset()
             when (it) {
-                is HoleType.Rectangle -> hotspotPath.op(Path().apply { addRect(it.rectF, Path.Direction.CCW) }, Path.Op.UNION)
-                is HoleType.RoundRectangle -> hotspotPath.op(Path().apply { addRoundRect(it.rectF, it.cornerRadius, it.cornerRadius, Path.Direction.CCW) }, Path.Op.UNION)
+                is HoleType.Rectangle -> holePath.addRect(it.rectF, Path.Direction.CCW)
+                is HoleType.RoundRectangle -> holePath.addRoundRect(it.rectF, it.cornerRadius, it.cornerRadius, Path.Direction.CCW)
             }
+            hotspotPath.op(holePath, Path.Op.UNION)
         }
+    }
+
+    private fun preparePath(screenWidth: Int, screenHeight: Int) {
+        pathWidth = screenWidth
+        pathHeight = screenHeight
         with(path) {
             reset()
             fillType = Path.FillType.EVEN_ODD
@@ -120,7 +144,9 @@ class HoleDrawer(private val bgColor: Int, private val holes: List<HoleType>) {
     }
 
     fun draw(canvas: Canvas, screenWidth: Int, screenHeight: Int) {
-        preparePath(screenWidth, screenHeight)
+        if (screenWidth != pathWidth || screenHeight != pathHeight) {
+            preparePath(screenWidth, screenHeight)
+        }
         canvas.drawPath(path, paint)
     }
 }
\ No newline at end of file
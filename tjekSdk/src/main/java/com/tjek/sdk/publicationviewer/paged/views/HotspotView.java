@@ -20,6 +20,7 @@ import android.graphics.Rect;
 import android.graphics.RectF;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.animation.Animation;
 import android.view.animation.AnimationUtils;
 
 import com.tjek.sdk.R;
@@ -30,16 +31,56 @@ public class HotspotView extends View {
 
     public static final String TAG = HotspotView.class.getSimpleName();
 
-    private final RectF mBounds;
+    private final RectF mBounds = new RectF();
     private final boolean longPress;
+    private Animation mInAnimation;
 
     public HotspotView(Context context, PublicationHotspotV2 hotspot, int[] pages, boolean longPress) {
+        this(context, hotspot.getBoundsForPages(pages), longPress);
+    }
+
+    /**
+     * @param bounds the bounds of the hotspot on the spread, as returned by {@link PublicationHotspotV2#getBoundsForPages(int[])}
+     */
+    public HotspotView(Context context, RectF bounds, boolean longPress) {
         super(context);
         this.longPress = longPress;
-        mBounds = hotspot.getBoundsForPages(pages);
+        if (bounds != null) {
+            mBounds.set(bounds);
+        }
         setBackgroundResource(R.drawable.tjek_sdk_pagedpub_hotspot_bg);
         // set the 'in' animation
-        setAnimation(AnimationUtils.loadAnimation(getContext(), longPress ? R.anim.tjek_sdk_pagedpub_hotspot_in_long_press : R.anim.tjek_sdk_pagedpub_hotspot_in));
+        setInAnimation(AnimationUtils.loadAnimation(getContext(), longPress ? R.anim.tjek_sdk_pagedpub_hotspot_in_long_press : R.anim.tjek_sdk_pagedpub_hotspot_in));
+    }
+
+    public boolean isLongPress() {
+        return longPress;
+    }
+
+    protected void setInAnimation(Animation animation) {
+        mInAnimation = animation;
+        setAnimation(animation);
+    }
+
+    /**
+     * Move a recycled view to other bounds.
+     * @param bounds the bounds of the hotspot on the spread, as returned by {@link PublicationHotspotV2#getBoundsForPages(int[])}
+     */
+    public void setBounds(RectF bounds) {
+        if (bounds == null) {
+            mBounds.setEmpty();
+        } else {
+            mBounds.set(bounds);
+        }
+        requestLayout();
+    }
+
+    /**
+     * Start the 'in' animation, loaded only once so it's reused when the view is recycled.
+     */
+    public void startInAnimation() {
+        setVisibility(View.VISIBLE);
+        startAnimation(mInAnimation);
     }
 
     @Override
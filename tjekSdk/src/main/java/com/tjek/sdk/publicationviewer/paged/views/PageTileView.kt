@@ -0,0 +1,251 @@
+package com.tjek.sdk.publicationviewer.paged.views
+/*
+ * Copyright (C) 2022 Tjek
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.graphics.BitmapRegionDecoder
+import android.graphics.Canvas
+import android.graphics.Paint
+import android.graphics.Rect
+import android.graphics.RectF
+import android.graphics.drawable.Drawable
+import android.os.Handler
+import android.os.Looper
+import android.util.LruCache
+import android.view.View
+import com.bumptech.glide.Glide
+import com.bumptech.glide.request.target.CustomTarget
+import com.bumptech.glide.request.transition.Transition
+import com.tjek.sdk.TjekLogCat
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * Draws the zoom image of a page decoding only the tiles that are visible,
+ * at the resolution needed by the current scale.
+ *
+ * The image is downloaded in Glide's disk cache and read with a BitmapRegionDecoder, so the full
+ * zoom image is never decoded in memory. The decoded tiles are kept in a cache shared by all the pages.
+ */
+internal class PageTileView(context: Context) : View(context) {
+
+    companion object {
+        // Size of a tile in decoded pixels
+        private const val TILE_SIZE = 512
+
+        // Tiles are decoded one at the time: the decoder is synchronized anyway and this keeps the memory peak low
+        private val decodeExecutor: ExecutorService = Executors.newSingleThreadExecutor()
+
+        private val tileCache = object : LruCache<TileKey, Bitmap>((Runtime.getRuntime().maxMemory() / 8).toInt()) {
+            override fun sizeOf(key: TileKey, value: Bitmap): Int = value.byteCount
+        }
+
+        // Bytes of the decoded tiles of all the pages, they count in the budget of the PageImageMemoryManager
+        internal val cachedBytes: Long
+            get() = tileCache.size().toLong()
+
+        // Drop the least recently drawn tiles until the cache is within maxBytes
+        internal fun trimCache(maxBytes: Long) {
+            tileCache.trimToSize(maxBytes.coerceIn(0, Int.MAX_VALUE.toLong()).toInt())
+        }
+    }
+
+    private data class TileKey(val url: String, val sampleSize: Int, val column: Int, val row: Int)
+
+    private val mainHandler = Handler(Looper.getMainLooper())
+    private val paint = Paint(Paint.FILTER_BITMAP_FLAG)
+    private val tileRect = Rect()
+    private val drawRect = RectF()
+    private val visibleRect = RectF()
+    private var scale = 1f
+
+    private var url: String? = null
+    private var decoder: BitmapRegionDecoder? = null
+    private var imageWidth = 0
+    private var imageHeight = 0
+
+    // Main thread only
+    private var visibleTiles: List<TileKey> = emptyList()
+    private val pendingTiles = HashSet<TileKey>()
+
+    // Read by the decode thread to skip the tiles that went out of the viewport before being decoded
+    @Volatile private var wantedTiles: Set<TileKey> = emptySet()
+
+    private val fileTarget = object : CustomTarget<File>() {
+
+        override fun onResourceReady(resource: File, transition: Transition<in File>?) {
+            val url = url ?: return
+            decodeExecutor.execute { openDecoder(url, resource) }
+        }
+
+        override fun onLoadCleared(placeholder: Drawable?) { }
+    }
+
+    val isActive: Boolean
+        get() = url != null
+
+    fun setImage(url: String) {
+        if (this.url == url) return
+        clear()
+        this.url = url
+        Glide.with(context).download(url).into(fileTarget)
+    }
+
+    // visible: the visible part of this view, in its own (unscaled) coordinates
+    fun setViewport(visible: RectF, scale: Float) {
+        visibleRect.set(visible)
+        this.scale = scale
+        updateTiles()
+    }
+
+    fun clear() {
+        if (url == null) return
+        url = null
+        Glide.with(context).clear(fileTarget)
+        decoder?.let { d -> decodeExecutor.execute { d.recycle() } }
+        decoder = null
+        visibleTiles = emptyList()
+        wantedTiles = emptySet()
+        pendingTiles.clear()
+        invalidate()
+    }
+
+    // Decode thread
+    @Suppress("DEPRECATION")
+    private fun openDecoder(url: String, file: File) {
+        val d = try {
+            BitmapRegionDecoder.newInstance(file.absolutePath, false)
+        } catch (e: IOException) {
+            TjekLogCat.w("Can't open the zoom image for tiling: ${e.message}")
+            null
+        } ?: return
+        mainHandler.post {
+            if (this.url == url) {
+                decoder = d
+                imageWidth = d.width
+                imageHeight = d.height
+                updateTiles()
+            } else {
+                decodeExecutor.execute { d.recycle() }
+            }
+        }
+    }
+
+    private fun updateTiles() {
+        val url = url ?: return
+        val d = decoder ?: return
+        if (width == 0 || height == 0 || visibleRect.isEmpty) {
+            visibleTiles = emptyList()
+            wantedTiles = emptySet()
+            invalidate()
+            return
+        }
+
+        // Largest power of 2 that doesn't decode less pixels than the ones on the screen
+        val imagePixelsPerScreenPixel = imageWidth / (width * scale)
+        var sampleSize = 1
+        while (sampleSize * 2 <= imagePixelsPerScreenPixel) {
+            sampleSize *= 2
+        }
+
+        val tileImageSize = TILE_SIZE * sampleSize
+        val scaleX = imageWidth / width.toFloat()
+        val scaleY = imageHeight / height.toFloat()
+        val columns = (imageWidth + tileImageSize - 1) / tileImageSize
+        val rows = (imageHeight + tileImageSize - 1) / tileImageSize
+        val firstColumn = ((visibleRect.left * scaleX).toInt() / tileImageSize).coerceIn(0, columns - 1)
+        val lastColumn = ((visibleRect.right * scaleX).toInt() / tileImageSize).coerceIn(0, columns - 1)
+        val firstRow = ((visibleRect.top * scaleY).toInt() / tileImageSize).coerceIn(0, rows - 1)
+        val lastRow = ((visibleRect.bottom * scaleY).toInt() / tileImageSize).coerceIn(0, rows - 1)
+
+        val tiles = ArrayList<TileKey>((lastColumn - firstColumn + 1) * (lastRow - firstRow + 1))
+        for (row in firstRow..lastRow) {
+            for (column in firstColumn..lastColumn) {
+                tiles.add(TileKey(url, sampleSize, column, row))
+            }
+        }
+        if (tiles != visibleTiles) {
+            visibleTiles = tiles
+            wantedTiles = tiles.toHashSet()
+            for (tile in tiles) {
+                if (tileCache.get(tile) == null && pendingTiles.add(tile)) {
+                    decodeExecutor.execute { decodeTile(d, tile) }
+                }
+            }
+            invalidate()
+        }
+    }
+
+    // Decode thread
+    private fun decodeTile(d: BitmapRegionDecoder, tile: TileKey) {
+        var bitmap: Bitmap? = null
+        if (tile in wantedTiles && !d.isRecycled) {
+            val size = TILE_SIZE * tile.sampleSize
+            val left = tile.column * size
+            val top = tile.row * size
+            val region = Rect(left, top, (left + size).coerceAtMost(d.width), (top + size).coerceAtMost(d.height))
+            val options = BitmapFactory.Options().apply {
+                inSampleSize = tile.sampleSize
+                // page images have no transparency
+                inPreferredConfig = Bitmap.Config.RGB_565
+            }
+            bitmap = try {
+                d.decodeRegion(region, options)
+            } catch (e: IllegalArgumentException) {
+                TjekLogCat.printStackTrace(e)
+                null
+            } catch (e: OutOfMemoryError) {
+                tileCache.evictAll()
+                null
+            }
+        }
+        mainHandler.post {
+            pendingTiles.remove(tile)
+            if (bitmap != null) {
+                tileCache.put(tile, bitmap)
+                if (tile in wantedTiles) invalidate()
+            }
+        }
+    }
+
+    override fun onDraw(canvas: Canvas) {
+        if (visibleTiles.isEmpty()) return
+        val scaleX = width / imageWidth.toFloat()
+        val scaleY = height / imageHeight.toFloat()
+        for (tile in visibleTiles) {
+            val bitmap = tileCache.get(tile) ?: continue
+            val size = TILE_SIZE * tile.sampleSize
+            tileRect.set(0, 0, bitmap.width, bitmap.height)
+            val left = tile.column * size
+            val top = tile.row * size
+            drawRect.set(
+                left * scaleX,
+                top * scaleY,
+                (left + bitmap.width * tile.sampleSize).coerceAtMost(imageWidth) * scaleX,
+                (top + bitmap.height * tile.sampleSize).coerceAtMost(imageHeight) * scaleY
+            )
+            canvas.drawBitmap(bitmap, tileRect, drawRect, paint)
+        }
+    }
+
+    override fun onDetachedFromWindow() {
+        super.onDetachedFromWindow()
+        clear()
+    }
+}
@@ -17,43 +17,132 @@ package com.tjek.sdk.publicationviewer.paged.views
 import android.annotation.SuppressLint
 import android.content.Context
 import android.graphics.Color
+import android.graphics.Point
+import android.graphics.RectF
+import android.graphics.drawable.BitmapDrawable
 import android.graphics.drawable.Drawable
+import android.os.SystemClock
 import android.view.Gravity
 import android.view.View
 import android.view.ViewGroup
 import android.widget.ImageView
 import com.bumptech.glide.Glide
+import com.bumptech.glide.RequestBuilder
+import com.bumptech.glide.RequestManager
+import com.bumptech.glide.load.DataSource
+import com.bumptech.glide.load.DecodeFormat
+import com.bumptech.glide.load.engine.GlideException
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy
+import com.bumptech.glide.request.RequestListener
 import com.bumptech.glide.request.target.CustomViewTarget
+import com.bumptech.glide.request.target.Target
 import com.bumptech.glide.request.transition.Transition
 import com.tjek.sdk.ColorInt
+import com.tjek.sdk.api.models.ImageUrlsV2
 import com.tjek.sdk.api.models.PublicationPageV2
+import com.tjek.sdk.publicationviewer.paged.PageImageFormat
+import com.tjek.sdk.publicationviewer.paged.PageImageMemoryManager
+import com.tjek.sdk.publicationviewer.paged.PageImageModelLoader
+import com.tjek.sdk.publicationviewer.paged.PageImageVariant
+import com.tjek.sdk.publicationviewer.paged.libs.verso.FrameTimingRecorder
 import com.tjek.sdk.publicationviewer.paged.libs.verso.VersoPageView
 import com.tjek.sdk.publicationviewer.paged.libs.verso.VersoPageViewListener
 import com.tjek.sdk.publicationviewer.paged.layouts.AspectRatioFrameLayout
+import com.tjek.sdk.publicationviewer.paged.libs.zoomlayout.ZoomLayout
 import com.tjek.sdk.publicationviewer.paged.utils.UnitUtils
+import kotlin.math.ceil
 
-private enum class Size{
-    Thumb, View, Zoom
+// The decode scale of a zoomed image is rounded up to a multiple of this, so a pinch doesn't request a new image per step
+private const val ZOOM_DECODE_STEP = 0.5f
+
+// The size of a page fitted in the screen in portrait, whatever the current orientation.
+// It's the decode size of the thumb and view images: it doesn't change on rotation, so the images decoded
+// before a rotation are still memory cache hits after it and only the spreads are laid out again
+internal fun pageDecodeSize(context: Context, aspectRatio: Float): Point {
+    val metrics = context.resources.displayMetrics
+    val short = minOf(metrics.widthPixels, metrics.heightPixels)
+    val long = maxOf(metrics.widthPixels, metrics.heightPixels)
+    if (aspectRatio <= 0f) return Point(short, long)
+    return if (aspectRatio < short.toFloat() / long) Point((long * aspectRatio).toInt().coerceAtLeast(1), long)
+        else Point(short, (short / aspectRatio).toInt().coerceAtLeast(1))
+}
+
+internal enum class PageImageMode {
+    // The image decoded at the size of the page
+    Page,
+    // The image of the page, with the visible tiles of the zoom image on top
+    Tiles,
+    // The zoom image, decoded for the zoom scale
+    ScaledDecode
+}
+
+// The view image covers the unzoomed page: once zoomed in, the page shows the tiles of the zoom image,
+// or the zoom image decoded for the zoom scale
+internal fun pageImageMode(zoomScale: Float, tiles: Boolean, zoomUrl: String?): PageImageMode = when {
+    zoomScale <= 1f -> PageImageMode.Page
+    tiles && zoomUrl != null -> PageImageMode.Tiles
+    else -> PageImageMode.ScaledDecode
+}
+
+// The decode scale of a zoomed page: the zoom scale rounded up to the next step.
+// It never goes down while zoomed, the image already decoded is large enough when zooming out
+internal fun zoomedDecodeScale(zoomScale: Float, currentDecodeScale: Float): Float {
+    val scale = ceil(zoomScale / ZOOM_DECODE_STEP) * ZOOM_DECODE_STEP
+    return maxOf(scale, currentDecodeScale)
+}
+
+// Every page image request (view and prefetch) goes through here,
+// so the prefetched images have the same memory cache key as the ones loaded by PageView.
+// The url of the variant is picked by PageImageModelLoader.
+// Images are decoded at most at the given size (never upscaled), in the requested format
+internal fun RequestManager.loadPageImage(
+    images: ImageUrlsV2,
+    variant: PageImageVariant,
+    format: PageImageFormat,
+    decodeSize: Point
+): RequestBuilder<Drawable> {
+    val request = load(images)
+        .set(PageImageModelLoader.VARIANT, variant)
+        .downsample(DownsampleStrategy.CENTER_INSIDE)
+        .override(decodeSize.x, decodeSize.y)
+    return when (format) {
+        PageImageFormat.Hardware -> request.format(DecodeFormat.PREFER_ARGB_8888)
+        PageImageFormat.ARGB_8888 -> request.format(DecodeFormat.PREFER_ARGB_8888).disallowHardwareConfig()
+        PageImageFormat.RGB_565 -> request.format(DecodeFormat.PREFER_RGB_565).disallowHardwareConfig()
+    }
 }
 
 @SuppressLint("SetTextI18n")
 class PageView(
     context: Context,
-    private val publicationPage: PublicationPageV2?,
+    private var publicationPage: PublicationPageV2?,
     showPageNumberWhileLoading: Boolean = true,
-    textColor: ColorInt = Color.TRANSPARENT
+    textColor: ColorInt = Color.TRANSPARENT,
+    private val tiledZoom: Boolean = true
 ) : AspectRatioFrameLayout(context), VersoPageView {
 
-    private var size: Size? = null
+    // The variant and decode size of the image requested, null when there's none
+    private var requestedSize: Point? = null
+    private var requestedVariant: PageImageVariant? = null
+    private var zoomScale = 1f
+    private var decodeScale = 1f
     private var imageView: ImageView
+    private var tileView: PageTileView? = null
+    private val visibleRect = RectF()
+    private var released = false
+
+    // Set by SpreadConfiguration, it keeps the page images within the memory budget
+    internal var memoryManager: PageImageMemoryManager? = null
+    // Set by SpreadConfiguration when the frame timings are collected
+    internal var frameTimings: FrameTimingRecorder? = null
+    private var loadStartTime = 0L
     private var pulsatingTextView: PulsatingTextView? = null
     private var loadCompletionListener: VersoPageViewListener.OnLoadCompleteListener? = null
+    private var loadCompleteNotified = false
 
     private var pageTarget: CustomViewTarget<ImageView, Drawable>
 
     init {
-        aspectRatio = publicationPage?.aspectRatio?.toFloat() ?: 1f
-
         //Add the ImageView
         imageView = PageImageView(context)
         addView(imageView)
@@ -66,11 +155,35 @@ class PageView(
             pulsatingTextView = PulsatingTextView(context).apply {
                 layoutParams = lp
                 setPulseColors(textColor, 20, 80)
-                text = publicationPage?.let { "${publicationPage.index + 1}" } ?: ""
                 textSize = UnitUtils.spToPx(26, context).toFloat()
             }
             addView(pulsatingTextView)
         }
+        bind(publicationPage)
+    }
+
+    // Show another page in this view. Called on a detached view, when it's recycled by SpreadConfiguration
+    internal fun bind(page: PublicationPageV2?) {
+        publicationPage = page
+        aspectRatio = page?.aspectRatio?.toFloat() ?: 1f
+        requestedSize = null
+        zoomScale = 1f
+        decodeScale = 1f
+        released = false
+        loadCompleteNotified = false
+        loadCompletionListener = null
+        imageView.setImageDrawable(null)
+
+        // Draws the visible part of the zoom image on top of the view image
+        if (tiledZoom && page?.images?.zoom != null && tileView == null) {
+            tileView = PageTileView(context).also { addView(it, indexOfChild(imageView) + 1) }
+        }
+        tileView?.visibility = if (page?.images?.zoom != null) View.VISIBLE else View.GONE
+
+        pulsatingTextView?.apply {
+            text = page?.let { "${it.index + 1}" } ?: ""
+            visibility = View.VISIBLE
+        }
     }
 
     override fun setOnLoadCompleteListener(listener: VersoPageViewListener.OnLoadCompleteListener) {
@@ -78,48 +191,156 @@ class PageView(
     }
 
     override fun onZoom(scale: Float): Boolean {
-        when {
-            scale > 1.1f && !isZoomed() -> load(Size.Zoom)
-            scale < 1.1f && isZoomed() -> load(Size.View)
-        }
+        zoomScale = scale
+        load()
         return false
     }
 
+    override fun onViewportChanged(zoomLayout: ZoomLayout) {
+        tileView?.let {
+            if (it.isActive) {
+                zoomLayout.getVisibleRect(it, visibleRect)
+                it.setViewport(visibleRect, zoomLayout.scale)
+            }
+        }
+    }
+
     override fun onAttachedToWindow() {
         super.onAttachedToWindow()
-        load(Size.View)
+        memoryManager?.register(this)
+        load()
     }
 
     override fun onDetachedFromWindow() {
         super.onDetachedFromWindow()
+        memoryManager?.unregister(this)
         Glide.with(context).clear(pageTarget)
+        tileView?.clear()
+        requestedSize = null
+        requestedVariant = null
     }
 
-    override fun onVisible() { }
+    override fun onVisible() {
+        restoreImage()
+    }
 
     override fun onInvisible() { }
 
     override val page: Int
         get() = publicationPage?.index ?: 0
 
-    private fun isZoomed() = size == Size.Zoom
+    // Bytes used by the bitmap currently shown
+    internal val imageByteCount: Int
+        get() = ((imageView.drawable as? BitmapDrawable)?.bitmap?.allocationByteCount) ?: 0
 
-    private fun load(size: Size) {
-        if (this.size == size) return
-        this.size = size
+    // Drop the image to free memory, it's loaded again with restoreImage
+    internal fun releaseImage() {
+        if (requestedSize == null) return
         Glide.with(context).clear(pageTarget)
+        tileView?.clear()
+        requestedSize = null
+        requestedVariant = null
+        released = true
+        pulsatingTextView?.visibility = View.VISIBLE
+    }
+
+    internal fun restoreImage() {
+        if (released) load()
+    }
+
+    // Load the image of the page at the current zoom scale, if it isn't already requested
+    private fun load() {
+        val images = publicationPage?.images ?: return
+        val pageSize = pageDecodeSize(context, aspectRatio)
+        when (pageImageMode(zoomScale, tileView != null, images.zoom)) {
+            PageImageMode.Page -> {
+                tileView?.clear()
+                decodeScale = 1f
+                request(images, PageImageVariant.View, pageSize)
+            }
+            PageImageMode.Tiles -> {
+                // keep the image of the page as background and decode only the visible tiles of the zoom image
+                request(images, PageImageVariant.View, pageSize)
+                images.zoom?.let { tileView?.setImage(it) }
+            }
+            PageImageMode.ScaledDecode -> {
+                tileView?.clear()
+                decodeScale = zoomedDecodeScale(zoomScale, decodeScale)
+                val decodeSize = Point((pageSize.x * decodeScale).toInt(), (pageSize.y * decodeScale).toInt())
+                request(images, PageImageModelLoader.variantFor(zoomScale), decodeSize)
+            }
+        }
+    }
+
+    private fun request(images: ImageUrlsV2, variant: PageImageVariant, decodeSize: Point) {
+        if (requestedSize == decodeSize && requestedVariant == variant) return
+        requestedSize = decodeSize
+        requestedVariant = variant
+        released = false
+        loadStartTime = SystemClock.uptimeMillis()
+        val format = memoryManager?.format ?: PageImageFormat.Hardware
+        // No clear before loading: the smaller image is usually in the memory cache,
+        // so it's delivered in the same frame the previous image is cleared and the page never flashes.
         Glide.with(context)
-            .load(when(size) {
-                Size.Thumb -> publicationPage?.images?.thumb
-                Size.View -> publicationPage?.images?.view
-                Size.Zoom -> publicationPage?.images?.zoom
-            })
+            .loadPageImage(images, variant, format, decodeSize)
+            .listener(loadListener)
+            .thumbnail(smallerImageRequest(images, variant, format))
             .into(pageTarget)
     }
 
-    private fun createPageTarget(target: ImageView) = object : CustomViewTarget<ImageView, Drawable>(target) {
+    // Shown while the requested image loads: the view image of the unzoomed page, then the thumb image.
+    // They're decoded at the size of the page, a smaller image stays at its own size
+    private fun smallerImageRequest(images: ImageUrlsV2, variant: PageImageVariant, format: PageImageFormat): RequestBuilder<Drawable>? {
+        val smaller = when (variant) {
+            PageImageVariant.Zoom -> PageImageVariant.View
+            PageImageVariant.View -> if (images.thumb != null) PageImageVariant.Thumb else return null
+            PageImageVariant.Thumb -> return null
+        }
+        return Glide.with(context)
+            .loadPageImage(images, smaller, format, pageDecodeSize(context, aspectRatio))
+            .thumbnail(smallerImageRequest(images, smaller, format))
+    }
 
-        private var callback = true
+    // The page is loaded when the requested image is ready, not its thumbnail
+    private val loadListener = object : RequestListener<Drawable> {
+
+        override fun onLoadFailed(
+            e: GlideException?,
+            model: Any?,
+            target: Target<Drawable>?,
+            isFirstResource: Boolean
+        ): Boolean {
+            loadCompletionListener?.let {
+                if (!loadCompleteNotified) {
+                    loadCompleteNotified = true
+                    it.onPageLoadComplete(false, this@PageView)
+                }
+            }
+            return false
+        }
+
+        override fun onResourceReady(
+            resource: Drawable?,
+            model: Any?,
+            target: Target<Drawable>?,
+            dataSource: DataSource?,
+            isFirstResource: Boolean
+        ): Boolean {
+            // Images from the memory cache are ready right away, only the loads from the disk or the network count
+            if (dataSource != DataSource.MEMORY_CACHE) {
+                frameTimings?.recordPhase(FrameTimingRecorder.PHASE_PAGE_IMAGE_LOAD, SystemClock.uptimeMillis() - loadStartTime)
+            }
+            loadCompletionListener?.let {
+                if (!loadCompleteNotified) {
+                    loadCompleteNotified = true
+                    it.onPageLoadComplete(true, this@PageView)
+                }
+            }
+            return false
+        }
+    }
+
+    private fun createPageTarget(target: ImageView) = object : CustomViewTarget<ImageView, Drawable>(target) {
 
         override fun onResourceReady(
             resource: Drawable,
@@ -127,16 +348,12 @@ class PageView(
         ) {
             pulsatingTextView?.visibility = View.GONE
             target.setImageDrawable(resource)
-            loadCompletionListener?.let {
-                if (callback) {
-                    callback = false
-                    it.onPageLoadComplete(true, this@PageView)
-                }
-            }
+            memoryManager?.onImageLoaded(this@PageView)
         }
 
         override fun onLoadFailed(errorDrawable: Drawable?) {
-            target.setImageDrawable(null)
+            // keep showing the lower resolution image, if any
+            if (target.drawable == null) target.setImageDrawable(errorDrawable)
         }
 
         override fun onResourceCleared(placeholder: Drawable?) {
@@ -0,0 +1,91 @@
+package com.tjek.sdk.publicationviewer.paged
+
+import android.graphics.RectF
+import android.util.SparseArray
+import com.tjek.sdk.api.models.PublicationHotspotV2
+import com.tjek.sdk.publicationviewer.paged.utils.PolygonF
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+import kotlin.random.Random
+
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+class HotspotTableTest {
+
+    private fun rect(left: Float, top: Float, right: Float, bottom: Float): PolygonF {
+        return PolygonF(floatArrayOf(left, right, right, left), floatArrayOf(top, top, bottom, bottom))
+    }
+
+    private fun triangle(x: Float, y: Float, size: Float): PolygonF {
+        return PolygonF(floatArrayOf(x, x + size, x), floatArrayOf(y, y, y + size))
+    }
+
+    private fun hotspot(vararg locations: Pair<Int, PolygonF>): PublicationHotspotV2 {
+        val pageLocations = SparseArray<PolygonF>()
+        locations.forEach { pageLocations.put(it.first, it.second) }
+        return PublicationHotspotV2(offer = null, pageLocations = pageLocations)
+    }
+
+    @Test
+    fun testExactPolygon() {
+        val h = hotspot(0 to triangle(0.1f, 0.1f, 0.5f))
+        val table = HotspotTable(listOf(h))
+        Assert.assertEquals(listOf(h), table.findHotspots(intArrayOf(0), 0, 0.2f, 0.2f))
+        // inside the bounding box but outside the triangle
+        Assert.assertTrue(table.findHotspots(intArrayOf(0), 0, 0.55f, 0.55f).isEmpty())
+        // other page
+        Assert.assertTrue(table.findHotspots(intArrayOf(1), 1, 0.2f, 0.2f).isEmpty())
+    }
+
+    @Test
+    fun testOverlappingHotspotsKeepOrder() {
+        val h1 = hotspot(2 to rect(0f, 0f, 1f, 1f))
+        val h2 = hotspot(2 to rect(0.4f, 0.4f, 0.6f, 0.6f))
+        val h3 = hotspot(2 to rect(0.45f, 0.45f, 0.9f, 0.9f))
+        val table = HotspotTable(listOf(h1, h2, h3))
+        Assert.assertEquals(listOf(h1, h2, h3), table.findHotspots(intArrayOf(1, 2), 2, 0.5f, 0.5f))
+        Assert.assertEquals(listOf(h1, h3), table.findHotspots(intArrayOf(1, 2), 2, 0.8f, 0.8f))
+    }
+
+    @Test
+    fun testSameResultAsLinearScan() {
+        val random = Random(42)
+        val hotspots = List(300) {
+            val page = random.nextInt(4)
+            val x = random.nextFloat() * 0.9f
+            val y = random.nextFloat() * 0.9f
+            val size = 0.02f + random.nextFloat() * 0.2f
+            if (random.nextBoolean()) {
+                hotspot(page to rect(x, y, x + size, y + size))
+            } else {
+                hotspot(page to triangle(x, y, size), page + 1 to rect(0f, y, size, y + size))
+            }
+        }
+        val table = HotspotTable(hotspots)
+        repeat(2000) {
+            val page = random.nextInt(5)
+            val visiblePages = if (random.nextBoolean()) intArrayOf(page) else intArrayOf(page, page + 1)
+            val x = random.nextFloat()
+            val y = random.nextFloat()
+            val expected = hotspots.filter { it.hasLocationAt(visiblePages, page, x, y) }
+            Assert.assertEquals(expected, table.findHotspots(visiblePages, page, x, y))
+        }
+    }
+
+    @Test
+    fun testBoundsForPages() {
+        val h1 = hotspot(1 to triangle(0.5f, 0.2f, 0.5f), 2 to rect(0f, 0.3f, 0.2f, 0.6f))
+        val h2 = hotspot(3 to rect(0.1f, 0.1f, 0.2f, 0.2f))
+        val table = HotspotTable(listOf(h1, h2))
+        val out = RectF()
+        for (pages in listOf(intArrayOf(1), intArrayOf(2), intArrayOf(1, 2), intArrayOf(2, 3))) {
+            Assert.assertTrue(table.getBoundsForPages(h1, pages, out))
+            Assert.assertEquals(h1.getBoundsForPages(pages), out)
+        }
+        Assert.assertFalse(table.getBoundsForPages(h2, intArrayOf(1, 2), out))
+        Assert.assertFalse(table.getBoundsForPages(hotspot(1 to rect(0f, 0f, 1f, 1f)), intArrayOf(1), out))
+    }
+}
@@ -0,0 +1,61 @@
+package com.tjek.sdk.publicationviewer.paged
+
+import com.tjek.sdk.api.models.ImageUrlsV2
+import com.tjek.sdk.publicationviewer.paged.views.PageImageMode
+import com.tjek.sdk.publicationviewer.paged.views.pageImageMode
+import com.tjek.sdk.publicationviewer.paged.views.zoomedDecodeScale
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+class PageImageModelLoaderTest {
+
+    private val images = ImageUrlsV2(view = "view", zoom = "zoom", thumb = "thumb")
+
+    @Test
+    fun viewImageUnlessZoomed() {
+        Assert.assertEquals(PageImageVariant.View, PageImageModelLoader.variantFor(1f))
+        Assert.assertEquals(PageImageVariant.Zoom, PageImageModelLoader.variantFor(1.2f))
+        Assert.assertEquals("thumb", PageImageModelLoader.selectUrl(images, PageImageVariant.Thumb))
+        Assert.assertEquals("view", PageImageModelLoader.selectUrl(images, PageImageVariant.View))
+        Assert.assertEquals("zoom", PageImageModelLoader.selectUrl(images, PageImageVariant.Zoom))
+    }
+
+    @Test
+    fun missingVariantFallsBack() {
+        val noZoom = ImageUrlsV2(view = "view", zoom = null, thumb = null)
+        Assert.assertEquals("view", PageImageModelLoader.selectUrl(noZoom, PageImageVariant.Thumb))
+        Assert.assertEquals("view", PageImageModelLoader.selectUrl(noZoom, PageImageVariant.Zoom))
+        val noView = ImageUrlsV2(view = null, zoom = "zoom", thumb = "thumb")
+        Assert.assertEquals("zoom", PageImageModelLoader.selectUrl(noView, PageImageVariant.View))
+        Assert.assertNull(PageImageModelLoader.selectUrl(ImageUrlsV2(null, null, null), PageImageVariant.View))
+    }
+
+    @Test
+    fun offlineImageIsPreferredToRemoteZoom() {
+        val offline = ImageUrlsV2(
+            view = "/data/files/tjek_sdk_offline_publications/pub/images/0_view",
+            zoom = "https://example.com/pages/1-zoom.jpg",
+            thumb = "/data/files/tjek_sdk_offline_publications/pub/images/0_view"
+        )
+        Assert.assertEquals(offline.view, PageImageModelLoader.selectUrl(offline, PageImageVariant.Zoom))
+        val online = offline.copy(view = "https://example.com/pages/1-view.jpg")
+        Assert.assertEquals(online.zoom, PageImageModelLoader.selectUrl(online, PageImageVariant.Zoom))
+    }
+
+    @Test
+    fun zoomNeedsMorePixels() {
+        Assert.assertEquals(PageImageMode.Page, pageImageMode(1f, tiles = true, zoomUrl = "zoom"))
+        Assert.assertEquals(PageImageMode.Tiles, pageImageMode(1.5f, tiles = true, zoomUrl = "zoom"))
+        Assert.assertEquals(PageImageMode.ScaledDecode, pageImageMode(3f, tiles = false, zoomUrl = "zoom"))
+        Assert.assertEquals(PageImageMode.ScaledDecode, pageImageMode(2f, tiles = true, zoomUrl = null))
+        // decoded for the zoom scale, rounded up, and never smaller while zoomed
+        Assert.assertEquals(1.5f, zoomedDecodeScale(1.2f, 1f), 0f)
+        Assert.assertEquals(2f, zoomedDecodeScale(2f, 1f), 0f)
+        Assert.assertEquals(2.5f, zoomedDecodeScale(1.4f, 2.5f), 0f)
+    }
+}
@@ -0,0 +1,83 @@
+package com.tjek.sdk.publicationviewer.paged
+
+import android.os.Looper
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.Config
+import java.time.Duration
+
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+class PageViewTrackerTest {
+
+    private val viewed = ArrayList<Int>()
+    private val tracker = PageViewTracker(1000) { viewed.add(it) }
+
+    private fun wait(millis: Long) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis))
+    }
+
+    @Test
+    fun pageIsViewedAfterThreshold() {
+        tracker.setVisiblePages(intArrayOf(1, 2))
+        wait(999)
+        Assert.assertEquals(emptyList<Int>(), viewed)
+        wait(1)
+        Assert.assertEquals(listOf(1, 2), viewed)
+        wait(5000)
+        Assert.assertEquals(listOf(1, 2), viewed)
+    }
+
+    @Test
+    fun shortVisitIsNotViewed() {
+        tracker.setVisiblePages(intArrayOf(1))
+        wait(300)
+        tracker.setVisiblePages(intArrayOf(2))
+        wait(1000)
+        Assert.assertEquals(listOf(2), viewed)
+    }
+
+    @Test
+    fun backAndForthIsCoalesced() {
+        tracker.setVisiblePages(intArrayOf(1))
+        wait(600)
+        tracker.setVisiblePages(intArrayOf(2))
+        wait(200)
+        tracker.setVisiblePages(intArrayOf(1))
+        // 600 + 400 ms on page 1
+        wait(400)
+        Assert.assertEquals(listOf(1), viewed)
+        tracker.setVisiblePages(intArrayOf(2))
+        wait(200)
+        tracker.setVisiblePages(intArrayOf(1))
+        wait(2000)
+        // page 1 is still the same view
+        Assert.assertEquals(listOf(1), viewed)
+    }
+
+    @Test
+    fun revisitAfterWindowIsNewView() {
+        tracker.setVisiblePages(intArrayOf(1))
+        wait(1000)
+        tracker.setVisiblePages(intArrayOf(2))
+        wait(PageViewTracker.COALESCE_WINDOW + 1)
+        tracker.setVisiblePages(intArrayOf(1))
+        wait(1000)
+        Assert.assertEquals(listOf(1, 2, 1), viewed)
+    }
+
+    @Test
+    fun pauseStopsDwell() {
+        tracker.setVisiblePages(intArrayOf(1))
+        wait(500)
+        tracker.pause()
+        wait(5000)
+        Assert.assertEquals(emptyList<Int>(), viewed)
+        tracker.resume()
+        wait(500)
+        Assert.assertEquals(listOf(1), viewed)
+    }
+}
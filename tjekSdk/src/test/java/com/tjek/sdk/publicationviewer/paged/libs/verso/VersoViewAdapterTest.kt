@@ -0,0 +1,81 @@
+package com.tjek.sdk.publicationviewer.paged.libs.verso
+
+import android.content.Context
+import android.content.res.Configuration
+import android.view.View
+import android.view.ViewGroup
+import android.widget.FrameLayout
+import androidx.test.core.app.ApplicationProvider
+import com.tjek.sdk.R
+import com.tjek.sdk.publicationviewer.paged.libs.zoomlayout.ZoomLayout
+import org.junit.Assert
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+class VersoViewAdapterTest {
+
+    private val context: Context = ApplicationProvider.getApplicationContext()
+
+    private class TwoPageSpreads(private val context: Context) : VersoSpreadConfiguration {
+        val recycled = ArrayList<View>()
+
+        override fun getPageView(container: ViewGroup, page: Int): View = recycled.removeLastOrNull() ?: View(context)
+        override fun recyclePageView(view: View) { recycled.add(view) }
+        override fun getSpreadOverlay(container: ViewGroup, pages: IntArray): View? = null
+        override fun onConfigurationChanged(newConfig: Configuration) { }
+        override val pageCount: Int = 4
+        override val spreadCount: Int = 2
+        override val spreadMargin: Int = 0
+        override fun getSpreadProperty(spreadPosition: Int): VersoSpreadProperty =
+            VersoSpreadProperty(getPagesFromSpreadPosition(spreadPosition), 1f, 3f, 1f)
+        override fun getSpreadPositionFromPage(page: Int): Int = page / 2
+        override fun getPagesFromSpreadPosition(spreadPosition: Int): IntArray = intArrayOf(spreadPosition * 2, spreadPosition * 2 + 1)
+        override fun hasData(): Boolean = true
+    }
+
+    // The layout of tjek_sdk_verso_page_layout, built in code so the test doesn't need the resources
+    private fun spreadView(): ZoomLayout {
+        val zoomLayout = ZoomLayout(context)
+        val pages = VersoHorizontalLayout(context)
+        pages.id = R.id.verso_pages_container
+        zoomLayout.addView(pages)
+        return zoomLayout
+    }
+
+    @Test
+    fun spreadViewsAreRecycled() {
+        val config = TwoPageSpreads(context)
+        val pool = SpreadViewPool()
+        val zoomLayout = spreadView()
+        pool.recycle(zoomLayout)
+        val adapter = VersoViewAdapter(config, pool)
+        val pager = FrameLayout(context)
+
+        val first = adapter.instantiateItem(pager, 0) as VersoSpread
+        Assert.assertSame(zoomLayout, first.zoomLayout)
+        Assert.assertSame(first, adapter.getSpread(0))
+        Assert.assertTrue(adapter.isViewFromObject(zoomLayout, first))
+        Assert.assertEquals(1, pager.childCount)
+        Assert.assertNull(first.host)
+
+        adapter.destroyItem(pager, 0, first)
+        Assert.assertEquals(0, pager.childCount)
+        Assert.assertNull(adapter.getSpread(0))
+        Assert.assertFalse(first.hasView())
+        Assert.assertEquals(2, config.recycled.size)
+
+        // The next spread takes the views of the previous one
+        val second = adapter.instantiateItem(pager, 1) as VersoSpread
+        Assert.assertSame(zoomLayout, second.zoomLayout)
+        Assert.assertEquals(0, config.recycled.size)
+        Assert.assertArrayEquals(intArrayOf(2, 3), second.pages)
+
+        adapter.clearState()
+        Assert.assertEquals(0, pager.childCount)
+        Assert.assertNull(adapter.getSpread(1))
+    }
+}